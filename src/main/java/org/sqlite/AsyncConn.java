@@ -0,0 +1,259 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Asynchronous facade confining a connection to its executor (see {@link Conn#getExecutor()}):
+ * operations are queued in submission order and run one at a time, the caller is never blocked
+ * (unless it waits for a {@link Result}).
+ * The wrapped connection must not be used directly anymore.
+ */
+public class AsyncConn implements AutoCloseable {
+  /**
+   * Operation run on the connection's thread.
+   */
+  public interface Work<T> {
+    T run(Conn c) throws SQLiteException;
+  }
+  /**
+   * Completion notification (called by the connection's thread, or by the caller's thread when already completed).
+   * Callbacks must be short and must not throw (exceptions are ignored).
+   */
+  public interface Callback<T> {
+    void onSuccess(T result);
+    void onFailure(Throwable t);
+  }
+
+  /**
+   * Pending result of an asynchronous operation.
+   */
+  public static class Result<T> extends FutureTask<T> {
+    private List<Callback<? super T>> callbacks = new ArrayList<Callback<? super T>>(1);
+
+    Result(Callable<T> callable) {
+      super(callable);
+    }
+    // completed explicitly (see complete/fail)
+    Result() {
+      super(new Callable<T>() {
+        @Override
+        public T call() {
+          throw new IllegalStateException("not runnable");
+        }
+      });
+    }
+    void complete(T value) {
+      set(value);
+    }
+    void fail(Throwable t) {
+      setException(t);
+    }
+
+    /**
+     * @return this result (for chaining)
+     */
+    public Result<T> whenComplete(Callback<? super T> callback) {
+      synchronized (this) {
+        if (callbacks != null) {
+          callbacks.add(callback);
+          return this;
+        }
+      }
+      fire(callback);
+      return this;
+    }
+
+    @Override
+    protected void done() {
+      final List<Callback<? super T>> callbacks;
+      synchronized (this) {
+        callbacks = this.callbacks;
+        this.callbacks = null;
+      }
+      for (Callback<? super T> callback : callbacks) {
+        fire(callback);
+      }
+    }
+
+    private void fire(Callback<? super T> callback) {
+      try {
+        final T result;
+        try {
+          result = get();
+        } catch (ExecutionException e) {
+          callback.onFailure(e.getCause());
+          return;
+        } catch (CancellationException e) {
+          callback.onFailure(e);
+          return;
+        } catch (InterruptedException e) { // cannot happen: already done
+          Thread.currentThread().interrupt();
+          callback.onFailure(e);
+          return;
+        }
+        callback.onSuccess(result);
+      } catch (RuntimeException e) {
+        // ignored: the connection's thread must not be broken by a callback
+      }
+    }
+  }
+
+  private final Conn c;
+  private final ExecutorService executor;
+
+  /**
+   * @param c connection confined to its executor from now on
+   */
+  public AsyncConn(Conn c) throws ConnException {
+    this.c = c;
+    this.executor = c.getExecutor();
+  }
+
+  /**
+   * @return a pending result (failed with a ConnException when the connection is closed,
+   * cancelled when the connection is closed before it is run)
+   */
+  public <T> Result<T> submit(final Work<T> work) {
+    final Result<T> result = new Result<T>(new Callable<T>() {
+      @Override
+      public T call() throws SQLiteException {
+        return work.run(c);
+      }
+    });
+    try {
+      executor.execute(result);
+    } catch (RejectedExecutionException e) { // closed
+      result.fail(new ConnException(null, "connection closed", ErrCodes.WRAPPER_SPECIFIC));
+    }
+    return result;
+  }
+
+  /**
+   * Prepares the statement and returns it to the statement cache,
+   * so that the next {@link #query} or {@link #execute} with the same SQL is not parsed again.
+   */
+  public Result<Void> prepare(final String sql) {
+    return submit(new Work<Void>() {
+      @Override
+      public Void run(Conn c) throws SQLiteException {
+        c.prepare(sql).close();
+        return null;
+      }
+    });
+  }
+
+  /**
+   * @return all the rows (mapped)
+   */
+  public <T> Result<List<T>> query(final String sql, final RowMapper<T> mapper, final Object... params) {
+    return submit(new Work<List<T>>() {
+      @Override
+      public List<T> run(Conn c) throws SQLiteException {
+        final List<T> rows = new ArrayList<T>();
+        final RowIterator<T> it = c.iterate(sql, mapper, params);
+        try {
+          while (it.hasNext()) {
+            rows.add(it.next());
+          }
+        } catch (UncheckedSQLiteException e) {
+          throw e.getCause();
+        } finally {
+          it.close();
+        }
+        return rows;
+      }
+    });
+  }
+
+  /**
+   * @return number of rows modified
+   */
+  public Result<Integer> execute(final String sql, final Object... params) {
+    return submit(new Work<Integer>() {
+      @Override
+      public Integer run(Conn c) throws SQLiteException {
+        final Stmt s = c.prepare(sql);
+        try {
+          s.bind(params);
+          s.exec();
+        } finally {
+          s.close();
+        }
+        return c.getChanges();
+      }
+    });
+  }
+
+  /**
+   * The work is run in a transaction: committed when it returns, rolled back when it (or the commit) fails.
+   */
+  public <T> Result<T> transaction(final Work<T> work) {
+    return submit(new Work<T>() {
+      @Override
+      public T run(Conn c) throws SQLiteException {
+        c.fastExec("BEGIN");
+        try {
+          final T result = work.run(c);
+          c.fastExec("COMMIT");
+          return result;
+        } catch (Throwable t) { // including a failed COMMIT (e.g. BUSY or deferred constraint)
+          if (!c.getAutoCommit()) {
+            try {
+              c.fastExec("ROLLBACK");
+            } catch (ConnException ignored) {
+              // the original error is reported
+            }
+          }
+          throw t;
+        }
+      }
+    });
+  }
+
+  /**
+   * Closes the connection once the pending operations are done.
+   * @return pending result code (No exception is thrown).
+   */
+  public Result<Integer> closeAsync() {
+    return submit(new Work<Integer>() {
+      @Override
+      public Integer run(Conn c) {
+        return c.close();
+      }
+    });
+  }
+  /**
+   * Waits for the pending operations and closes the connection.
+   */
+  @Override
+  public void close() throws ConnException {
+    final Result<Integer> result = closeAsync();
+    final int res;
+    try {
+      res = result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ConnException(null, "interrupted while closing connection", ErrCodes.WRAPPER_SPECIFIC);
+    } catch (ExecutionException e) { // already closed
+      return;
+    }
+    if (res != ErrCodes.SQLITE_OK) {
+      throw new ConnException(null, "error while closing connection", res);
+    }
+  }
+}
@@ -4,16 +4,27 @@ import com.sun.jna.Pointer;
 
 public class Backup {
   private Pointer pBackup;
+  private final Guard guard;
   private final Conn dst, src;
+  // pages copied so far (only maintained when events are enabled)
+  private int copied;
 
   Backup(Pointer pBackup, Conn dst, Conn src) {
     this.pBackup = pBackup;
     this.dst = dst;
     this.src = src;
+    this.guard = dst.track(this, Guard.BACKUP, pBackup);
   }
 
   public boolean step(int nPage) throws ConnException {
+    final EventListener l = Events.listener;
+    final long start = l == null ? 0 : System.nanoTime();
     final int res = SQLite.sqlite3_backup_step(pBackup, nPage);
+    if (l != null) {
+      final int copied = pageCount() - remaining();
+      l.backup(start, System.nanoTime() - start, copied - this.copied);
+      this.copied = copied;
+    }
     if (res == SQLite.SQLITE_OK || res == ErrCodes.SQLITE_BUSY || res == ErrCodes.SQLITE_LOCKED) { // TODO Trace busy/locked errors
       return true;
     } else if (res == SQLite.SQLITE_DONE) {
@@ -60,7 +71,7 @@ public class Backup {
     if (pBackup == null) {
       return SQLite.SQLITE_OK;
     }
-    final int res = SQLite.sqlite3_backup_finish(pBackup);
+    final int res = dst.untrack(guard);
     pBackup = null;
     return res;
   }
@@ -0,0 +1,151 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+/**
+ * Columnar parameters executed by {@link Stmt#executeMany(BindBatch, int)}: one caller-supplied array per parameter,
+ * row <code>i</code> is bound from element <code>i</code> of each array (without boxing nor per-row allocation).
+ * Null bitmaps (optional): bit <code>i</code> of <code>nulls[i / 64]</code> is set when the value of row <code>i</code> is NULL.
+ * For TEXT and BLOB parameters, a null element is bound as NULL.
+ * Parameters not set are bound as NULL.
+ */
+public class BindBatch {
+  private static final int TEXT = 1, BLOB = 2, LONG = 3, DOUBLE = 4;
+
+  private final int[] types;
+  private final long[][] longs;
+  private final double[][] doubles;
+  private final String[][] texts;
+  private final byte[][][] blobs;
+  private final long[][] nulls;
+
+  /**
+   * @param paramCount number of parameters of the statement
+   */
+  public BindBatch(int paramCount) {
+    this.types = new int[paramCount];
+    this.longs = new long[paramCount][];
+    this.doubles = new double[paramCount][];
+    this.texts = new String[paramCount][];
+    this.blobs = new byte[paramCount][][];
+    this.nulls = new long[paramCount][];
+  }
+
+  /**
+   * @param i     The leftmost SQL parameter has an index of 1
+   * @param nulls may be null
+   */
+  public BindBatch longs(int i, long[] values, long[] nulls) {
+    set(i, LONG, nulls);
+    longs[i - 1] = values;
+    return this;
+  }
+  /**
+   * @param i     The leftmost SQL parameter has an index of 1
+   * @param nulls may be null
+   */
+  public BindBatch doubles(int i, double[] values, long[] nulls) {
+    set(i, DOUBLE, nulls);
+    doubles[i - 1] = values;
+    return this;
+  }
+  /**
+   * @param i The leftmost SQL parameter has an index of 1
+   */
+  public BindBatch texts(int i, String[] values) {
+    set(i, TEXT, null);
+    texts[i - 1] = values;
+    return this;
+  }
+  /**
+   * @param i The leftmost SQL parameter has an index of 1
+   */
+  public BindBatch blobs(int i, byte[][] values) {
+    set(i, BLOB, null);
+    blobs[i - 1] = values;
+    return this;
+  }
+
+  private void set(int i, int type, long[] nulls) {
+    if (i < 1 || i > types.length) {
+      throw new IllegalArgumentException(String.format("parameter index (%d) out of range [1, %d]", i, types.length));
+    }
+    types[i - 1] = type;
+    longs[i - 1] = null;
+    doubles[i - 1] = null;
+    texts[i - 1] = null;
+    blobs[i - 1] = null;
+    this.nulls[i - 1] = nulls;
+  }
+
+  public int getParamCount() {
+    return types.length;
+  }
+
+  /**
+   * @return the number of rows available in all the columns
+   */
+  public int getRowCount() {
+    int rows = Integer.MAX_VALUE;
+    for (int p = 0; p < types.length; p++) {
+      switch (types[p]) {
+        case LONG:
+          rows = Math.min(rows, longs[p].length);
+          break;
+        case DOUBLE:
+          rows = Math.min(rows, doubles[p].length);
+          break;
+        case TEXT:
+          rows = Math.min(rows, texts[p].length);
+          break;
+        case BLOB:
+          rows = Math.min(rows, blobs[p].length);
+          break;
+      }
+    }
+    return rows == Integer.MAX_VALUE ? 0 : rows;
+  }
+
+  // Binds all the parameters of one row.
+  void bind(Stmt s, int row) throws StmtException {
+    for (int p = 0; p < types.length; p++) {
+      final int i = p + 1;
+      if (nulls[p] != null && (nulls[p][row >>> 6] & (1L << row)) != 0) {
+        s.bindNull(i);
+        continue;
+      }
+      switch (types[p]) {
+        case LONG:
+          s.bindLong(i, longs[p][row]);
+          break;
+        case DOUBLE:
+          s.bindDouble(i, doubles[p][row]);
+          break;
+        case TEXT:
+          final String text = texts[p][row];
+          if (text == null) {
+            s.bindNull(i);
+          } else {
+            s.bindText(i, text);
+          }
+          break;
+        case BLOB:
+          final byte[] blob = blobs[p][row];
+          if (blob == null) {
+            s.bindNull(i);
+          } else {
+            s.bindBlob(i, blob);
+          }
+          break;
+        default:
+          s.bindNull(i);
+      }
+    }
+  }
+}
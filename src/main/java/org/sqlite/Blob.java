@@ -14,6 +14,7 @@ import java.nio.ByteBuffer;
 public class Blob {
   private final Conn c;
   private Pointer pBlob;
+  private final Guard guard;
   private int readOffset;
   private int writeOffset;
   private int size = -1;
@@ -21,6 +22,7 @@ public class Blob {
   Blob(Conn c, Pointer pBlob) {
     this.c = c;
     this.pBlob = pBlob;
+    this.guard = c.track(this, Guard.BLOB, pBlob);
   }
 
   /**
@@ -40,7 +42,12 @@ public class Blob {
     }
     checkOpen();
     final int n = b.remaining();
+    final EventListener l = Events.listener;
+    final long start = l == null ? 0 : System.nanoTime();
     final int res = SQLite.sqlite3_blob_read(pBlob, b, n, readOffset);
+    if (l != null) {
+      l.blob(false, start, System.nanoTime() - start, res == SQLite.SQLITE_OK ? n : 0);
+    }
     if (res != SQLite.SQLITE_OK) {
       throw new SQLiteException(c, "error while reading blob", res);
     }
@@ -54,7 +61,12 @@ public class Blob {
     }
     checkOpen();
     final int n = b.remaining();
+    final EventListener l = Events.listener;
+    final long start = l == null ? 0 : System.nanoTime();
     final int res = SQLite.sqlite3_blob_write(pBlob, b, n, writeOffset);
+    if (l != null) {
+      l.blob(true, start, System.nanoTime() - start, res == SQLite.SQLITE_OK ? n : 0);
+    }
     if (res != SQLite.SQLITE_OK) {
       throw new SQLiteException(c, "error while writing blob", res);
     }
@@ -77,10 +89,8 @@ public class Blob {
     if (pBlob == null) {
       return SQLite.SQLITE_OK;
     }
-    final int res = SQLite.sqlite3_blob_close(pBlob);
-    if (res == SQLite.SQLITE_OK) {
-      pBlob = null;
-    }
+    final int res = c.untrack(guard);
+    pBlob = null; // closed even if an error is returned
     return res;
   }
   public void closeAndCheck() throws SQLiteException {
@@ -0,0 +1,24 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+/**
+ * Backoff policy invoked when a table is locked (see {@link Conn#setBusyHandler(BusyHandler)}).
+ * Implementations must be stateless: the same instance may be shared by many connections.
+ * Some policies are provided by {@link BusyHandlers}.
+ */
+public interface BusyHandler {
+  /**
+   * May sleep before returning.
+   * @param count   number of times the handler has already been invoked for the same locking event
+   * @param elapsed nanoseconds spent since the first invocation for the same locking event
+   * @return true to retry, false to give up (SQLITE_BUSY is returned to the caller)
+   */
+  boolean busy(int count, long elapsed);
+}
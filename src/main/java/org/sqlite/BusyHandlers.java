@@ -0,0 +1,99 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Busy handler policies.
+ * All of them give up when the thread is interrupted.
+ */
+public final class BusyHandlers {
+  private static final long MIN_SLEEP = TimeUnit.MICROSECONDS.toNanos(100);
+  private static final long MAX_SLEEP = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final long POLL_INTERVAL = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private BusyHandlers() {
+  }
+
+  /**
+   * Sleeps a random duration between 0 and min(100ms, 100µs * 2^count) ("full jitter").
+   * @param timeout in milliseconds
+   */
+  public static BusyHandler exponential(final int timeout) {
+    final long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+    return new BusyHandler() {
+      @Override
+      public boolean busy(int count, long elapsed) {
+        final long remaining = timeoutNanos - elapsed;
+        if (remaining <= 0) {
+          return false;
+        }
+        final long max = count >= 10 ? MAX_SLEEP : Math.min(MAX_SLEEP, MIN_SLEEP << count);
+        return sleep(Math.min(remaining, ThreadLocalRandom.current().nextLong(max) + 1));
+      }
+      @Override
+      public String toString() {
+        return String.format("exponential(%d ms)", timeout);
+      }
+    };
+  }
+
+  /**
+   * Polls the lock every millisecond until the deadline.
+   * @param timeout in milliseconds
+   */
+  public static BusyHandler deadline(final int timeout) {
+    final long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+    return new BusyHandler() {
+      @Override
+      public boolean busy(int count, long elapsed) {
+        final long remaining = timeoutNanos - elapsed;
+        if (remaining <= 0) {
+          return false;
+        }
+        return sleep(Math.min(remaining, POLL_INTERVAL));
+      }
+      @Override
+      public String toString() {
+        return String.format("deadline(%d ms)", timeout);
+      }
+    };
+  }
+
+  /**
+   * Yields the processor for the first retries (short write transactions are often done by then)
+   * and then delegates to another policy.
+   * @param yields number of retries with Thread.yield
+   * @param then   policy used once yielding is exhausted (invoked with count - yields)
+   */
+  public static BusyHandler yieldFirst(final int yields, final BusyHandler then) {
+    return new BusyHandler() {
+      @Override
+      public boolean busy(int count, long elapsed) {
+        if (count < yields) {
+          Thread.yield();
+          return !Thread.currentThread().isInterrupted();
+        }
+        return then.busy(count - yields, elapsed);
+      }
+      @Override
+      public String toString() {
+        return String.format("yieldFirst(%d, %s)", yields, then);
+      }
+    };
+  }
+
+  private static boolean sleep(long nanos) {
+    LockSupport.parkNanos(nanos);
+    return !Thread.currentThread().isInterrupted();
+  }
+}
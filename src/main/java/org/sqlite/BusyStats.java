@@ -0,0 +1,58 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+/**
+ * Lock contention seen by one connection's busy handler (one record per locking event).
+ */
+public class BusyStats {
+  private final Histogram retries = new Histogram();
+  private final Histogram waits = new Histogram();
+  private volatile long giveUps;
+
+  void record(int count, long elapsedNanos, boolean gaveUp) {
+    retries.record(count);
+    waits.record(elapsedNanos / 1000);
+    if (gaveUp) {
+      synchronized (this) {
+        giveUps++;
+      }
+    }
+  }
+
+  /**
+   * @return number of busy handler invocations per locking event
+   */
+  public Histogram getRetries() {
+    return retries;
+  }
+  /**
+   * @return time spent waiting for a lock per locking event (in microseconds)
+   */
+  public Histogram getWaits() {
+    return waits;
+  }
+  /**
+   * @return number of locking events which ended with SQLITE_BUSY
+   */
+  public long getGiveUps() {
+    return giveUps;
+  }
+
+  public synchronized void reset() {
+    retries.reset();
+    waits.reset();
+    giveUps = 0;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("BusyStats(retries: [%s], waits (µs): [%s], give-ups: %d)", retries, waits, giveUps);
+  }
+}
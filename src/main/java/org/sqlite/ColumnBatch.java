@@ -0,0 +1,216 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import com.sun.jna.Pointer;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Columnar buffers filled by {@link Stmt#fetch(ColumnBatch)}: up to <code>capacity</code> rows are copied
+ * into caller-supplied arrays, column by column, without any per-row allocation.
+ * <ul>
+ *   <li>{@link #longs} / {@link #doubles}: one value per row, converted by SQLite like sqlite3_column_int64 / sqlite3_column_double,</li>
+ *   <li>{@link #bytes}: TEXT (UTF-8) or BLOB content appended to the shared arena,
+ *   the value of row <code>i</code> is <code>arena[offsets[i] .. offsets[i] + lengths[i])</code>,</li>
+ *   <li>null bitmaps: bit <code>i</code> of <code>nulls[i / 64]</code> is set when the value of row <code>i</code> is NULL.</li>
+ * </ul>
+ * Columns not bound are skipped.
+ * A value is checked for NULL (second native call) only when it reads as 0, 0.0 or a null pointer.
+ */
+public class ColumnBatch {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final int capacity;
+  private final int[] types; // ColTypes.* of each bound column (0 when not bound)
+  private final long[][] longs;
+  private final double[][] doubles;
+  private final int[][] offsets;
+  private final int[][] lengths;
+  private final long[][] nulls;
+  private byte[] arena = new byte[0];
+  private int arenaSize;
+  private int size;
+
+  /**
+   * @param capacity    maximum number of rows fetched at once
+   * @param columnCount number of columns of the statement
+   */
+  public ColumnBatch(int capacity, int columnCount) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException(String.format("invalid capacity: %d", capacity));
+    }
+    this.capacity = capacity;
+    this.types = new int[columnCount];
+    this.longs = new long[columnCount][];
+    this.doubles = new double[columnCount][];
+    this.offsets = new int[columnCount][];
+    this.lengths = new int[columnCount][];
+    this.nulls = new long[columnCount][];
+  }
+
+  /**
+   * @param values at least <code>capacity</code> elements
+   * @param nulls  at least <code>(capacity + 63) / 64</code> elements
+   */
+  public ColumnBatch longs(int iCol, long[] values, long[] nulls) {
+    checkLength(values.length, capacity);
+    bind(iCol, ColTypes.SQLITE_INTEGER, nulls);
+    longs[iCol] = values;
+    return this;
+  }
+  /**
+   * @param values at least <code>capacity</code> elements
+   * @param nulls  at least <code>(capacity + 63) / 64</code> elements
+   */
+  public ColumnBatch doubles(int iCol, double[] values, long[] nulls) {
+    checkLength(values.length, capacity);
+    bind(iCol, ColTypes.SQLITE_FLOAT, nulls);
+    doubles[iCol] = values;
+    return this;
+  }
+  /**
+   * @param offsets at least <code>capacity</code> elements (offsets in the shared arena)
+   * @param lengths at least <code>capacity</code> elements
+   * @param nulls   at least <code>(capacity + 63) / 64</code> elements
+   */
+  public ColumnBatch bytes(int iCol, int[] offsets, int[] lengths, long[] nulls) {
+    checkLength(offsets.length, capacity);
+    checkLength(lengths.length, capacity);
+    bind(iCol, ColTypes.SQLITE_BLOB, nulls);
+    this.offsets[iCol] = offsets;
+    this.lengths[iCol] = lengths;
+    return this;
+  }
+  /**
+   * @param arena initial arena shared by the variable-length columns (replaced by a larger one when full)
+   */
+  public ColumnBatch arena(byte[] arena) {
+    this.arena = arena;
+    return this;
+  }
+
+  private void bind(int iCol, int type, long[] nulls) {
+    if (iCol < 0 || iCol >= types.length) {
+      throw new IllegalArgumentException(String.format("column index (%d) >= column count (%d)", iCol, types.length));
+    }
+    checkLength(nulls.length, (capacity + 63) / 64);
+    types[iCol] = type;
+    longs[iCol] = null;
+    doubles[iCol] = null;
+    offsets[iCol] = null;
+    lengths[iCol] = null;
+    this.nulls[iCol] = nulls;
+  }
+  private static void checkLength(int length, int expected) {
+    if (length < expected) {
+      throw new IllegalArgumentException(String.format("array too small: %d < %d", length, expected));
+    }
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+  int getColumnCount() {
+    return types.length;
+  }
+  /**
+   * @return number of rows fetched by the last {@link Stmt#fetch(ColumnBatch)}
+   */
+  public int size() {
+    return size;
+  }
+  /**
+   * @return the arena holding the variable-length values (may have been replaced by a larger one)
+   */
+  public byte[] getArena() {
+    return arena;
+  }
+  /**
+   * @return number of bytes used in the arena by the last fetch
+   */
+  public int getArenaSize() {
+    return arenaSize;
+  }
+  public boolean isNull(int iCol, int row) {
+    return (nulls[iCol][row >>> 6] & (1L << row)) != 0;
+  }
+  /**
+   * Convenience method decoding a TEXT value from the arena (allocates a String).
+   * @return null when the value is NULL
+   */
+  public String getText(int iCol, int row) {
+    if (isNull(iCol, row)) {
+      return null;
+    }
+    return new String(arena, offsets[iCol][row], lengths[iCol][row], UTF_8);
+  }
+
+  void clear() {
+    size = 0;
+    arenaSize = 0;
+    for (int iCol = 0; iCol < types.length; iCol++) {
+      if (types[iCol] != 0) {
+        Arrays.fill(nulls[iCol], 0, (capacity + 63) / 64, 0L);
+      }
+    }
+  }
+  boolean isFull() {
+    return size == capacity;
+  }
+
+  // Copies the current row of pStmt.
+  void add(Pointer pStmt) {
+    final int row = size;
+    for (int iCol = 0; iCol < types.length; iCol++) {
+      switch (types[iCol]) {
+        case ColTypes.SQLITE_INTEGER: {
+          final long value = SQLite.sqlite3_column_int64(pStmt, iCol);
+          longs[iCol][row] = value;
+          if (value == 0L) {
+            markNull(pStmt, iCol, row);
+          }
+          break;
+        }
+        case ColTypes.SQLITE_FLOAT: {
+          final double value = SQLite.sqlite3_column_double(pStmt, iCol);
+          doubles[iCol][row] = value;
+          if (value == 0.0) {
+            markNull(pStmt, iCol, row);
+          }
+          break;
+        }
+        case ColTypes.SQLITE_BLOB: {
+          final Pointer p = SQLite.sqlite3_column_blob(pStmt, iCol);
+          offsets[iCol][row] = arenaSize;
+          if (p == null) { // NULL or zero-length
+            lengths[iCol][row] = 0;
+            markNull(pStmt, iCol, row);
+          } else {
+            final int n = SQLite.sqlite3_column_bytes(pStmt, iCol);
+            if (arenaSize + n > arena.length) {
+              arena = Arrays.copyOf(arena, Math.max(arenaSize + n, arena.length * 2));
+            }
+            p.read(0, arena, arenaSize, n);
+            lengths[iCol][row] = n;
+            arenaSize += n;
+          }
+          break;
+        }
+      }
+    }
+    size++;
+  }
+  private void markNull(Pointer pStmt, int iCol, int row) {
+    if (SQLite.sqlite3_column_type(pStmt, iCol) == ColTypes.SQLITE_NULL) {
+      nulls[iCol][row >>> 6] |= 1L << row;
+    }
+  }
+}
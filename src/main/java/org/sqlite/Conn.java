@@ -9,13 +9,72 @@
 package org.sqlite;
 
 import com.sun.jna.Pointer;
+import com.sun.jna.ptr.IntByReference;
+import com.sun.jna.ptr.LongByReference;
 import com.sun.jna.ptr.PointerByReference;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 public class Conn {
   public static final String MEMORY = ":memory:";
   public static final String TEMP_FILE = "";
 
+  // guards of all connections (leaked connections are closed by the next open)
+  private static final Guards CONNS = new Guards();
+  // period of sqlite3_interrupt calls while waiting for the executor to terminate (ms)
+  private static final long INTERRUPT_PERIOD = 10;
+
   private Pointer pDb;
+  private final Guard guard;
+  // guards of the statements, blobs and backups
+  private final Guards guards = new Guards();
+  private final StmtCache cache = new StmtCache(StmtCache.DEFAULT_MAX_SIZE);
+  // null when statement status counters are not collected
+  private volatile StmtStats stmtStats;
+  private volatile SlowQueryLog slowQueryLog;
+  private TraceListener traceListener;
+  // must stay reachable while installed
+  private SQLite.TraceCallback traceCallback;
+
+  /**
+   * Number of virtual machine instructions between two checks of the query deadline.
+   */
+  public static final int DEADLINE_CHECK_OPS = 1000;
+  // deadline (System.nanoTime) of the statement being stepped, 0 when none
+  private volatile long deadline;
+  // installed while a statement with a query timeout is executed (must stay reachable while installed)
+  private volatile SQLite.ProgressCallback deadlineHandler;
+
+  private BusyHandler busyHandler;
+  // must stay reachable while installed
+  private SQLite.BusyCallback busyCallback;
+  private final BusyStats busyStats = new BusyStats();
+  // current locking event (nanoTime of the first and of the last busy handler invocations, 0 when none)
+  private long busyStart;
+  private long busyLast;
+  private int busyCount;
+
+  // runs the asynchronous work on this connection (created on demand)
+  private ExecutorService executor;
+  private volatile Thread executorThread;
+  private volatile CloseListener closeListener;
+
+  /**
+   * Notified when the connection is closed, whoever closes it.
+   */
+  public interface CloseListener {
+    /**
+     * Invoked once by the thread closing the connection, before anything is released (must not throw).
+     */
+    void closing(Conn c);
+  }
 
   /**
    * @param filename ":memory:" for memory db, "" for temp file db
@@ -28,6 +87,7 @@ public class Conn {
     if (!SQLite.sqlite3_threadsafe()) {
       throw new SQLiteException("sqlite library was not compiled for thread-safe operation", ErrCodes.WRAPPER_SPECIFIC);
     }
+    CONNS.drain();
     final PointerByReference ppDb = new PointerByReference();
     final int res = SQLite.sqlite3_open_v2(filename, ppDb, flags, vfs);
     if (res != SQLite.SQLITE_OK) {
@@ -39,12 +99,6 @@ public class Conn {
     return new Conn(ppDb.getValue());
   }
 
-  @Override
-  protected void finalize() throws Throwable {
-    // TODO log dangling connection
-    close();
-    super.finalize();
-  }
   /**
    * @return result code (No exception is thrown).
    */
@@ -53,17 +107,21 @@ public class Conn {
       return SQLite.SQLITE_OK;
     }
 
-    // Dangling statements
-    Pointer pStmt = SQLite.sqlite3_next_stmt(pDb, null);
-    while (pStmt != null) {
-      // "Dangling statement: " + SQLite.sqlite3_sql(pStmt); TODO log
-      SQLite.sqlite3_finalize(pStmt);
-      pStmt = SQLite.sqlite3_next_stmt(pDb, null);
+    final CloseListener l = closeListener;
+    if (l != null) {
+      closeListener = null;
+      l.closing(this);
     }
-
-    final int res = SQLite.sqlite3_close(pDb);
+    shutdownExecutor();
+    cache.flush();
+    deadlineHandler = null;
+    busyCallback = null;
+    // Dangling statements, blobs and backups are released first (reported when sampled by the leak detector)
+    final int res = CONNS.release(guard);
     //if (res == SQLite.SQLITE_OK) {
       pDb = null;
+      traceListener = null;
+      traceCallback = null; // after SQLITE_TRACE_CLOSE
     //}
     return res;
   }
@@ -76,6 +134,85 @@ public class Conn {
 
   private Conn(Pointer pDb) {
     this.pDb = pDb;
+    this.guard = CONNS.add(this, Guard.CONN, pDb, guards);
+  }
+
+  /**
+   * @return executor running tasks one at a time on a daemon thread owned by this connection
+   * (the thread stops when idle; when the connection is closed, pending tasks are cancelled
+   * and the running one is interrupted and waited for)
+   * @throws ConnException if the connection is closed
+   */
+  public synchronized ExecutorService getExecutor() throws ConnException {
+    checkOpen();
+    if (executor == null) {
+      final ThreadPoolExecutor e = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+          new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+              final Thread thread = new Thread(r, "sqlite-jna-conn");
+              thread.setDaemon(true);
+              executorThread = thread;
+              return thread;
+            }
+          });
+      e.allowCoreThreadTimeOut(true);
+      executor = e;
+    }
+    return executor;
+  }
+  // Pending tasks are cancelled (their owner is notified) and the running one is interrupted:
+  // statements must not be finalized while used by the connection's thread.
+  private void shutdownExecutor() {
+    final ExecutorService e;
+    synchronized (this) {
+      e = executor;
+      executor = null;
+    }
+    if (e == null) {
+      return;
+    }
+    for (Runnable task : e.shutdownNow()) {
+      if (task instanceof Future) {
+        ((Future<?>) task).cancel(false);
+      }
+    }
+    if (Thread.currentThread() == executorThread) { // closed by a task (see AsyncConn#closeAsync)
+      return;
+    }
+    boolean interrupted = false;
+    while (true) {
+      SQLite.sqlite3_interrupt(pDb); // step in progress
+      try {
+        if (e.awaitTermination(INTERRUPT_PERIOD, TimeUnit.MILLISECONDS)) {
+          break;
+        }
+      } catch (InterruptedException ie) {
+        interrupted = true; // the running task must be waited for anyway
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // Called by Stmt, Blob and Backup constructors
+  Guard track(Object owner, int kind, Pointer handle) {
+    return guards.add(owner, kind, handle, null);
+  }
+  // Called by Stmt, Blob and Backup when closed by their owner
+  int untrack(Guard g) {
+    return guards.release(g);
+  }
+
+  /**
+   * @param listener null to remove the current one
+   */
+  public void setCloseListener(CloseListener listener) {
+    closeListener = listener;
+  }
+  public CloseListener getCloseListener() {
+    return closeListener;
   }
 
   public boolean isReadOnly() {
@@ -87,18 +224,219 @@ public class Conn {
   }
 
   /**
+   * @param id org.sqlite.Limits.*
+   * @return the current limit
+   */
+  public int getLimit(int id) throws ConnException {
+    checkOpen();
+    return SQLite.sqlite3_limit(pDb, id, -1);
+  }
+  /**
+   * @param id    org.sqlite.Limits.*
+   * @param value new limit (truncated to the compile-time upper bound)
+   * @return the previous limit
+   */
+  public int setLimit(int id, int value) throws ConnException {
+    checkOpen();
+    return SQLite.sqlite3_limit(pDb, id, value);
+  }
+
+  /**
+   * The statement is looked up in the statement cache first.
    * @param sql query
    * @return Prepared Statement
    * @throws ConnException
    */
   public Stmt prepare(String sql) throws ConnException {
+    return prepare(sql, true);
+  }
+
+  /**
+   * @param sql query
+   * @param cacheable true to look up the statement cache and to return the statement to it when closed
+   * @return Prepared Statement
+   * @throws ConnException
+   */
+  public Stmt prepare(String sql, boolean cacheable) throws ConnException {
     checkOpen();
+    guards.drain(); // statements not closed by their owner
+    final EventListener l = Events.listener;
+    final long start = l == null ? 0 : System.nanoTime();
+    if (cacheable) {
+      final Pointer pStmt = cache.find(sql);
+      if (pStmt != null) {
+        if (l != null) {
+          l.prepare(sql, start, System.nanoTime() - start, true);
+        }
+        final Stmt s = new Stmt(this, pStmt, "");
+        s.cacheKey = sql;
+        return s;
+      }
+    }
     final Pointer pSql = SQLite.nativeString(sql);
     final PointerByReference ppStmt = new PointerByReference();
     final PointerByReference ppTail = new PointerByReference();
     final int res = SQLite.sqlite3_prepare_v2(pDb, pSql, -1, ppStmt, ppTail); // FIXME nbytes + 1
+    if (l != null) {
+      l.prepare(sql, start, System.nanoTime() - start, false);
+    }
     check(res, "error while preparing statement '%s'", sql);
-    return new Stmt(this, ppStmt.getValue(), ppTail.getValue());
+    final Stmt s = new Stmt(this, ppStmt.getValue(), ppTail.getValue().getString(0));
+    if (cacheable) {
+      s.cacheKey = sql;
+    }
+    return s;
+  }
+
+  /**
+   * Lazy query: the (cached) statement is closed once the iteration is over or when the iterator is closed.
+   * @param sql    query
+   * @param params bound by index
+   */
+  public <T> RowIterator<T> iterate(String sql, RowMapper<T> mapper, Object... params) throws SQLiteException {
+    final Stmt s = prepare(sql);
+    try {
+      s.bind(params);
+    } catch (StmtException e) {
+      s.close();
+      throw e;
+    }
+    return new RowIterator<T>(s, mapper, true);
+  }
+
+  /**
+   * Demand-driven query: rows are stepped on the connection's executor (see {@link #getExecutor()})
+   * only when requested by the subscriber.
+   * @param sql    query
+   * @param params bound by index
+   */
+  public <T> RowPublisher<T> publish(String sql, RowMapper<T> mapper, Object... params) {
+    return new RowPublisher<T>(this, sql, mapper, params);
+  }
+
+  /**
+   * @return the cache of idle prepared statements (see {@link #prepare(String)})
+   */
+  public StmtCache getStmtCache() {
+    return cache;
+  }
+
+  /**
+   * Statement status counters are read each time an execution ends and aggregated by SQL text.
+   * @param stmtStats null to stop collecting (may be shared by many connections)
+   */
+  public void setStmtStats(StmtStats stmtStats) {
+    this.stmtStats = stmtStats;
+  }
+  /**
+   * @return null when statement status counters are not collected
+   */
+  public StmtStats getStmtStats() {
+    return stmtStats;
+  }
+
+  /**
+   * @param slowQueryLog null to disable (may be shared by many connections)
+   */
+  public void setSlowQueryLog(SlowQueryLog slowQueryLog) {
+    this.slowQueryLog = slowQueryLog;
+  }
+  /**
+   * @return null when disabled
+   */
+  public SlowQueryLog getSlowQueryLog() {
+    return slowQueryLog;
+  }
+  /**
+   * Replaces the current trace listener (if any).
+   * @param listener null to stop tracing
+   * @param mask     org.sqlite.TraceMasks.* (SQLITE_TRACE_ROW should be avoided: one callback per row)
+   */
+  public void setTraceListener(final TraceListener listener, int mask) throws ConnException {
+    checkOpen();
+    if (listener == null || mask == 0) {
+      check(SQLite.sqlite3_trace_v2(pDb, 0, null, null), "error while removing trace listener on '%s'", getFilename());
+      traceListener = null;
+      traceCallback = null;
+      return;
+    }
+    final SQLite.TraceCallback callback = new SQLite.TraceCallback() {
+      @Override
+      public int invoke(int type, Pointer ctx, Pointer p, Pointer x) {
+        switch (type) {
+          case TraceMasks.SQLITE_TRACE_STMT:
+            listener.statement(Pointer.nativeValue(p), x.getString(0));
+            break;
+          case TraceMasks.SQLITE_TRACE_PROFILE:
+            listener.profile(Pointer.nativeValue(p), SQLite.sqlite3_sql(p), x.getLong(0));
+            break;
+          case TraceMasks.SQLITE_TRACE_ROW:
+            listener.row(Pointer.nativeValue(p));
+            break;
+          case TraceMasks.SQLITE_TRACE_CLOSE:
+            listener.close();
+            break;
+        }
+        return 0;
+      }
+    };
+    check(SQLite.sqlite3_trace_v2(pDb, mask, callback, null), "error while setting trace listener on '%s'", getFilename());
+    traceListener = listener;
+    traceCallback = callback;
+  }
+  /**
+   * @return current trace listener or null
+   */
+  public TraceListener getTraceListener() {
+    return traceListener;
+  }
+
+  // Used by the slow query log: the statement is prepared and stepped without any event, stats nor cache.
+  String explainQueryPlan(String sql) {
+    if (pDb == null) {
+      return null;
+    }
+    final PointerByReference ppStmt = new PointerByReference();
+    final PointerByReference ppTail = new PointerByReference();
+    final int res = SQLite.sqlite3_prepare_v2(pDb, SQLite.nativeString("EXPLAIN QUERY PLAN " + sql), -1, ppStmt, ppTail);
+    final Pointer pStmt = ppStmt.getValue();
+    if (res != SQLite.SQLITE_OK || pStmt == null) {
+      return null;
+    }
+    try {
+      final StringBuilder sb = new StringBuilder();
+      // columns: id, parent, notused, detail
+      final Map<Integer, Integer> depths = new HashMap<Integer, Integer>();
+      while (SQLite.sqlite3_step(pStmt) == SQLite.SQLITE_ROW) {
+        final Integer parentDepth = depths.get(SQLite.sqlite3_column_int(pStmt, 1));
+        final int depth = parentDepth == null ? 0 : parentDepth + 1;
+        depths.put(SQLite.sqlite3_column_int(pStmt, 0), depth);
+        if (sb.length() > 0) {
+          sb.append('\n');
+        }
+        for (int i = 0; i < depth; i++) {
+          sb.append("  ");
+        }
+        sb.append(SQLite.sqlite3_column_text(pStmt, 3));
+      }
+      return sb.toString();
+    } finally {
+      SQLite.sqlite3_finalize(pStmt);
+    }
+  }
+
+  // Called by Stmt.close: the native statement is reset and handed over to the statement cache
+  boolean release(String sql, Guard g) {
+    if (isClosed() || cache.getMaxSize() <= 0) {
+      return false;
+    }
+    final Pointer pStmt = guards.detach(g);
+    if (pStmt == null) {
+      return false;
+    }
+    SQLite.sqlite3_reset(pStmt);
+    cache.release(sql, pStmt);
+    return true;
   }
 
   /**
@@ -107,6 +445,12 @@ public class Conn {
   public static String libversion() {
     return SQLite.sqlite3_libversion();
   }
+  /**
+   * @return Run-time library version number (X*1000000 + Y*1000 + Z)
+   */
+  public static int libversionNumber() {
+    return SQLite.sqlite3_libversion_number();
+  }
 
   public static String mprintf(String format, String arg) {
     final Pointer p = SQLite.sqlite3_mprintf(format, arg);
@@ -116,22 +460,54 @@ public class Conn {
   }
 
   public void exec(String sql) throws ConnException, StmtException {
-    while (sql != null && sql.length() > 0) {
-      Stmt s = null;
-      try {
-        s = prepare(sql);
-        sql = s.getTail();
-        if (!s.isDumb()) { // this happens for a comment or white-space
-          s.exec();
-        }
-      } finally {
-        if (s != null) {
-          s.close();
-        }
-      }
+    if (sql != null && sql.length() > 0) {
+      new Script(this).run(sql);
     }
   }
 
+  /**
+   * Prepares the first statement of a native (UTF-8) script without copying its tail (see {@link Script}).
+   * @param pSql   script (not necessarily null-terminated)
+   * @param nBytes script length
+   * @param ppTail receives the first byte past the end of the statement
+   * @return null for a comment or white-space
+   */
+  Stmt prepare(Pointer pSql, int nBytes, PointerByReference ppTail) throws ConnException {
+    checkOpen();
+    guards.drain(); // statements not closed by their owner
+    final EventListener l = Events.listener;
+    final long start = l == null ? 0 : System.nanoTime();
+    final PointerByReference ppStmt = new PointerByReference();
+    final int res = SQLite.sqlite3_prepare_v2(pDb, pSql, nBytes, ppStmt, ppTail);
+    final Pointer pStmt = ppStmt.getValue();
+    if (l != null && pStmt != null) {
+      l.prepare(SQLite.sqlite3_sql(pStmt), start, System.nanoTime() - start, false);
+    }
+    if (res != SQLite.SQLITE_OK) {
+      final byte[] excerpt = pSql.getByteArray(0, Math.min(nBytes, 128));
+      throw new ConnException(this, String.format("error while preparing statement '%s'", new String(excerpt, Script.UTF_8)), res);
+    }
+    return pStmt == null ? null : new Stmt(this, pStmt, null);
+  }
+
+  /**
+   * Executes one or many non-parameterized statements (separated by semi-colon) in a single native call.
+   * Rows are ignored and the statement cache is bypassed.
+   * @param sql statements
+   * @throws ConnException
+   */
+  public void fastExec(String sql) throws ConnException {
+    checkOpen();
+    final PointerByReference pErrMsg = new PointerByReference();
+    final int res = SQLite.sqlite3_exec(pDb, sql, null, null, pErrMsg);
+    endBusy();
+    final Pointer p = pErrMsg.getValue();
+    if (p != null) {
+      SQLite.sqlite3_free(p);
+    }
+    check(res, "error while executing '%s'", sql);
+  }
+
   /**
    * @param onoff
    * @throws ConnException
@@ -197,6 +573,52 @@ public class Conn {
     return SQLite.sqlite3_last_insert_rowid(pDb);
   }
 
+  /**
+   * @param op    org.sqlite.DbStatus.*
+   * @param reset true to reset the highest value
+   * @return {current value, highest value}
+   * @throws ConnException
+   */
+  public int[] getDbStatus(int op, boolean reset) throws ConnException {
+    checkOpen();
+    final IntByReference pCur = new IntByReference();
+    final IntByReference pHiwtr = new IntByReference();
+    check(SQLite.sqlite3_db_status(pDb, op, pCur, pHiwtr, reset), "error while reading status of '%s'", getFilename());
+    return new int[]{pCur.getValue(), pHiwtr.getValue()};
+  }
+  /**
+   * @param reset true to reset the page cache counters and the highest values
+   * @return connection and process-wide statistics
+   * @throws SQLiteException
+   */
+  public DbStats getDbStats(boolean reset) throws SQLiteException {
+    return new DbStats(this, reset);
+  }
+  /**
+   * Process-wide status.
+   * @param op    org.sqlite.Status.*
+   * @param reset true to reset the highest value
+   * @return {current value, highest value}
+   * @throws SQLiteException
+   */
+  public static long[] getStatus(int op, boolean reset) throws SQLiteException {
+    final LongByReference pCurrent = new LongByReference();
+    final LongByReference pHighwater = new LongByReference();
+    final int res = SQLite.sqlite3_status64(op, pCurrent, pHighwater, reset);
+    if (res != SQLite.SQLITE_OK) {
+      throw new SQLiteException(String.format("error while reading status %d", op), res);
+    }
+    return new long[]{pCurrent.getValue(), pHighwater.getValue()};
+  }
+
+  /**
+   * Frees as much heap memory as possible from the connection's page cache (unused pages only).
+   */
+  public void releaseMemory() throws ConnException {
+    checkOpen();
+    check(SQLite.sqlite3_db_release_memory(pDb), "error while releasing memory of '%s'", getFilename());
+  }
+
   /**
    * Interrupt a long-running query
    */
@@ -205,9 +627,99 @@ public class Conn {
     SQLite.sqlite3_interrupt(pDb);
   }
 
+  // Called by Stmt.step/exec around sqlite3_step when the statement has a query timeout
+  void setDeadline(long deadline) {
+    if (deadline != 0 && deadlineHandler == null) {
+      installDeadlineHandler();
+    }
+    this.deadline = deadline;
+  }
+  private synchronized void installDeadlineHandler() {
+    if (deadlineHandler != null || pDb == null) {
+      return;
+    }
+    deadlineHandler = new SQLite.ProgressCallback() {
+      @Override
+      public int invoke(Pointer arg) {
+        final long d = deadline;
+        return d != 0 && System.nanoTime() - d > 0 ? 1 : 0;
+      }
+    };
+    SQLite.sqlite3_progress_handler(pDb, DEADLINE_CHECK_OPS, deadlineHandler, null);
+  }
+  // Called by Stmt when an execution with a deadline ends: the other statements must not pay the handler's upcalls
+  // (re-installed by the next step with a deadline)
+  synchronized void removeDeadlineHandler() {
+    if (deadlineHandler == null || pDb == null) {
+      return;
+    }
+    SQLite.sqlite3_progress_handler(pDb, 0, null, null);
+    deadlineHandler = null;
+  }
+
+  /**
+   * Replaces the busy handler (if any).
+   * @param ms total time to wait for a lock
+   */
   public void setBusyTimeout(int ms) throws ConnException {
     checkOpen();
     check(SQLite.sqlite3_busy_timeout(pDb, ms), "error while setting busy timeout on '%s'", getFilename());
+    busyHandler = null;
+    busyCallback = null;
+  }
+
+  /**
+   * Replaces the busy timeout. Each locking event handled is recorded in {@link #getBusyStats()}.
+   * @param handler null to remove the current handler (SQLITE_BUSY is returned immediately)
+   */
+  public void setBusyHandler(final BusyHandler handler) throws ConnException {
+    checkOpen();
+    if (handler == null) {
+      check(SQLite.sqlite3_busy_handler(pDb, null, null), "error while removing busy handler on '%s'", getFilename());
+      busyHandler = null;
+      busyCallback = null;
+      return;
+    }
+    final SQLite.BusyCallback callback = new SQLite.BusyCallback() {
+      @Override
+      public int invoke(Pointer arg, int count) {
+        final long now = System.nanoTime();
+        if (count == 0 || busyStart == 0) {
+          endBusy(); // previous event ended without any statement completion (lock acquired)
+          busyStart = now;
+        }
+        busyCount = count + 1;
+        final boolean retry = handler.busy(count, now - busyStart);
+        busyLast = System.nanoTime();
+        if (!retry) {
+          busyStats.record(busyCount, busyLast - busyStart, true);
+          busyStart = 0;
+        }
+        return retry ? 1 : 0;
+      }
+    };
+    check(SQLite.sqlite3_busy_handler(pDb, callback, null), "error while setting busy handler on '%s'", getFilename());
+    busyHandler = handler;
+    busyCallback = callback;
+  }
+  /**
+   * @return current busy handler or null (busy timeout)
+   */
+  public BusyHandler getBusyHandler() {
+    return busyHandler;
+  }
+  /**
+   * @return lock contention seen by the busy handler
+   */
+  public BusyStats getBusyStats() {
+    return busyStats;
+  }
+  // Called once a statement has been stepped: the current locking event, if any, is over.
+  void endBusy() {
+    if (busyStart != 0) {
+      busyStats.record(busyCount, busyLast - busyStart, false);
+      busyStart = 0;
+    }
   }
 
   public String getFilename() {
@@ -0,0 +1,161 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import java.util.Locale;
+
+/**
+ * Snapshot of a connection's status (page cache, lookaside, schema and statements memory)
+ * and of the process-wide memory status (see {@link Conn#getDbStats(boolean)}).
+ * Memory figures are in bytes.
+ */
+public class DbStats {
+  // connection
+  private final long cacheUsed;
+  private final long cacheHit;
+  private final long cacheMiss;
+  private final long cacheWrite;
+  private final long cacheSpill;
+  private final long lookasideUsed;
+  private final long lookasideHighwater;
+  private final long lookasideHit;
+  private final long lookasideMissSize;
+  private final long lookasideMissFull;
+  private final long schemaUsed;
+  private final long stmtUsed;
+  // process-wide
+  private final long memoryUsed;
+  private final long memoryHighwater;
+  private final long mallocCount;
+  private final long mallocSize;
+  private final long pageCacheUsed;
+  private final long pageCacheOverflow;
+
+  DbStats(Conn c, boolean reset) throws SQLiteException {
+    cacheUsed = c.getDbStatus(DbStatus.SQLITE_DBSTATUS_CACHE_USED, false)[0];
+    cacheHit = c.getDbStatus(DbStatus.SQLITE_DBSTATUS_CACHE_HIT, reset)[0];
+    cacheMiss = c.getDbStatus(DbStatus.SQLITE_DBSTATUS_CACHE_MISS, reset)[0];
+    cacheWrite = c.getDbStatus(DbStatus.SQLITE_DBSTATUS_CACHE_WRITE, reset)[0];
+    cacheSpill = c.getDbStatus(DbStatus.SQLITE_DBSTATUS_CACHE_SPILL, reset)[0];
+    final int[] lookaside = c.getDbStatus(DbStatus.SQLITE_DBSTATUS_LOOKASIDE_USED, reset);
+    lookasideUsed = lookaside[0];
+    lookasideHighwater = lookaside[1];
+    lookasideHit = c.getDbStatus(DbStatus.SQLITE_DBSTATUS_LOOKASIDE_HIT, reset)[1];
+    lookasideMissSize = c.getDbStatus(DbStatus.SQLITE_DBSTATUS_LOOKASIDE_MISS_SIZE, reset)[1];
+    lookasideMissFull = c.getDbStatus(DbStatus.SQLITE_DBSTATUS_LOOKASIDE_MISS_FULL, reset)[1];
+    schemaUsed = c.getDbStatus(DbStatus.SQLITE_DBSTATUS_SCHEMA_USED, false)[0];
+    stmtUsed = c.getDbStatus(DbStatus.SQLITE_DBSTATUS_STMT_USED, false)[0];
+
+    final long[] memory = Conn.getStatus(Status.SQLITE_STATUS_MEMORY_USED, false);
+    memoryUsed = memory[0];
+    memoryHighwater = memory[1];
+    mallocCount = Conn.getStatus(Status.SQLITE_STATUS_MALLOC_COUNT, false)[0];
+    mallocSize = Conn.getStatus(Status.SQLITE_STATUS_MALLOC_SIZE, false)[1];
+    pageCacheUsed = Conn.getStatus(Status.SQLITE_STATUS_PAGECACHE_USED, false)[0];
+    pageCacheOverflow = Conn.getStatus(Status.SQLITE_STATUS_PAGECACHE_OVERFLOW, false)[0];
+  }
+
+  /**
+   * @return heap memory used by the pager caches
+   */
+  public long getCacheUsed() {
+    return cacheUsed;
+  }
+  public long getCacheHit() {
+    return cacheHit;
+  }
+  public long getCacheMiss() {
+    return cacheMiss;
+  }
+  /**
+   * @return hits / (hits + misses) or NaN when the cache has not been accessed
+   */
+  public double getCacheHitRatio() {
+    return (double) cacheHit / (cacheHit + cacheMiss);
+  }
+  /**
+   * @return number of dirty pages written to disk
+   */
+  public long getCacheWrite() {
+    return cacheWrite;
+  }
+  /**
+   * @return number of dirty pages written to disk in the middle of a transaction because the cache was full
+   */
+  public long getCacheSpill() {
+    return cacheSpill;
+  }
+  /**
+   * @return number of lookaside slots currently in use
+   */
+  public long getLookasideUsed() {
+    return lookasideUsed;
+  }
+  public long getLookasideHighwater() {
+    return lookasideHighwater;
+  }
+  public long getLookasideHit() {
+    return lookasideHit;
+  }
+  public long getLookasideMissSize() {
+    return lookasideMissSize;
+  }
+  public long getLookasideMissFull() {
+    return lookasideMissFull;
+  }
+  public long getSchemaUsed() {
+    return schemaUsed;
+  }
+  public long getStmtUsed() {
+    return stmtUsed;
+  }
+  /**
+   * @return memory currently allocated by SQLite (all connections)
+   */
+  public long getMemoryUsed() {
+    return memoryUsed;
+  }
+  public long getMemoryHighwater() {
+    return memoryHighwater;
+  }
+  /**
+   * @return number of allocations currently checked out (all connections)
+   */
+  public long getMallocCount() {
+    return mallocCount;
+  }
+  /**
+   * @return largest allocation request
+   */
+  public long getMallocSize() {
+    return mallocSize;
+  }
+  /**
+   * @return pages used out of the pagecache memory allocator (0 unless SQLITE_CONFIG_PAGECACHE is set)
+   */
+  public long getPageCacheUsed() {
+    return pageCacheUsed;
+  }
+  /**
+   * @return page cache allocations that could not be satisfied by the pagecache memory allocator
+   */
+  public long getPageCacheOverflow() {
+    return pageCacheOverflow;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.ROOT, "DbStats(cache: used=%d, hit=%d, miss=%d, write=%d, spill=%d; " +
+            "lookaside: used=%d, highwater=%d, hit=%d, miss_size=%d, miss_full=%d; schema=%d; stmt=%d; " +
+            "memory: used=%d, highwater=%d, malloc_count=%d, malloc_size=%d; pagecache: used=%d, overflow=%d)",
+        cacheUsed, cacheHit, cacheMiss, cacheWrite, cacheSpill,
+        lookasideUsed, lookasideHighwater, lookasideHit, lookasideMissSize, lookasideMissFull, schemaUsed, stmtUsed,
+        memoryUsed, memoryHighwater, mallocCount, mallocSize, pageCacheUsed, pageCacheOverflow);
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+/**
+ * Connection status parameters (see {@link Conn#getDbStatus(int, boolean)}).
+ */
+public interface DbStatus {
+  /**
+   * Number of lookaside memory slots currently checked out
+   */
+  int SQLITE_DBSTATUS_LOOKASIDE_USED = 0;
+  /**
+   * Approximate number of bytes of heap memory used by all pager caches
+   */
+  int SQLITE_DBSTATUS_CACHE_USED = 1;
+  /**
+   * Approximate number of bytes of heap memory used to store the schema
+   */
+  int SQLITE_DBSTATUS_SCHEMA_USED = 2;
+  /**
+   * Approximate number of bytes of heap and lookaside memory used by all prepared statements
+   */
+  int SQLITE_DBSTATUS_STMT_USED = 3;
+  /**
+   * Number of malloc attempts that were satisfied using lookaside memory (highwater only)
+   */
+  int SQLITE_DBSTATUS_LOOKASIDE_HIT = 4;
+  /**
+   * Number of malloc attempts that might have been satisfied using lookaside memory but failed due to the amount of memory requested (highwater only)
+   */
+  int SQLITE_DBSTATUS_LOOKASIDE_MISS_SIZE = 5;
+  /**
+   * Number of malloc attempts that might have been satisfied using lookaside memory but failed due to all lookaside memory already being in use (highwater only)
+   */
+  int SQLITE_DBSTATUS_LOOKASIDE_MISS_FULL = 6;
+  /**
+   * Number of pager cache hits
+   */
+  int SQLITE_DBSTATUS_CACHE_HIT = 7;
+  /**
+   * Number of pager cache misses
+   */
+  int SQLITE_DBSTATUS_CACHE_MISS = 8;
+  /**
+   * Number of dirty cache entries that have been written to disk
+   */
+  int SQLITE_DBSTATUS_CACHE_WRITE = 9;
+  /**
+   * Non-zero if there are outstanding deferred foreign key constraints
+   */
+  int SQLITE_DBSTATUS_DEFERRED_FKS = 10;
+  /**
+   * Like SQLITE_DBSTATUS_CACHE_USED but memory shared by several connections is divided evenly between them
+   */
+  int SQLITE_DBSTATUS_CACHE_USED_SHARED = 11;
+  /**
+   * Number of dirty cache entries that have been written to disk in the middle of a transaction (cache spill)
+   */
+  int SQLITE_DBSTATUS_CACHE_SPILL = 12;
+}
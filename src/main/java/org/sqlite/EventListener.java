@@ -0,0 +1,40 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+/**
+ * Timed events (see {@link Events#setListener(EventListener)}), for example to commit JDK Flight Recorder events.
+ * Start times are {@link System#nanoTime()} values and durations are in nanoseconds.
+ * Methods are invoked by the thread using the connection and must not use it.
+ */
+public interface EventListener {
+  /**
+   * @param cached true when the statement has been found in the statement cache (nothing compiled)
+   */
+  void prepare(String sql, long start, long duration, boolean cached);
+  /**
+   * One execution: from the first step until the statement is done, reset or closed.
+   * @param duration time spent stepping (time spent by the application between two steps is excluded)
+   * @param rows     number of rows returned
+   */
+  void execute(String sql, long start, long duration, long rows);
+  /**
+   * @param command BEGIN, COMMIT, ROLLBACK, SAVEPOINT, RELEASE or ROLLBACK TO
+   */
+  void transaction(String command, long start, long duration);
+  /**
+   * @param write true for {@link Blob#write(java.nio.ByteBuffer)}, false for {@link Blob#read(java.nio.ByteBuffer)}
+   * @param bytes number of bytes transferred
+   */
+  void blob(boolean write, long start, long duration, int bytes);
+  /**
+   * @param pages number of pages copied by {@link Backup#step(int)}
+   */
+  void backup(long start, long duration, int pages);
+}
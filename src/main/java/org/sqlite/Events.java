@@ -0,0 +1,54 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+/**
+ * Process-wide event listener.
+ * When no listener is registered (default), instrumented calls only pay for a volatile read (the clock is not read).
+ */
+public final class Events {
+  static volatile EventListener listener;
+
+  private Events() {
+  }
+
+  /**
+   * @param l null to disable events
+   */
+  public static void setListener(EventListener l) {
+    listener = l;
+  }
+  /**
+   * @return null when events are disabled
+   */
+  public static EventListener getListener() {
+    return listener;
+  }
+
+  /**
+   * Listener ignoring all events (to be extended).
+   */
+  public static class Adapter implements EventListener {
+    @Override
+    public void prepare(String sql, long start, long duration, boolean cached) {
+    }
+    @Override
+    public void execute(String sql, long start, long duration, long rows) {
+    }
+    @Override
+    public void transaction(String command, long start, long duration) {
+    }
+    @Override
+    public void blob(boolean write, long start, long duration, int bytes) {
+    }
+    @Override
+    public void backup(long start, long duration, int pages) {
+    }
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-writer group commit: write tasks submitted by many threads are run by one thread on the writer connection
+ * and batched into one <code>BEGIN IMMEDIATE ... COMMIT</code> per group.
+ * A group is closed when it reaches <code>maxSize</code> tasks or <code>maxDelay</code> ms after its first task.
+ * Each task runs in its own savepoint: a failing task is rolled back without affecting the others.
+ * A task's result is completed once the group is committed (or has failed).
+ * An {@link Error} thrown by a task fails its whole group and stops the writer thread: the pending tasks are failed
+ * and no task is accepted anymore.
+ * The writer connection must not be used by other threads while the group commit is open (it is not closed by {@link #close()}).
+ */
+public class GroupCommit implements AutoCloseable {
+  private static final Task<Void> CLOSE = new Task<Void>(null);
+
+  private static final class Task<T> {
+    private final AsyncConn.Work<T> work;
+    private final AsyncConn.Result<T> result = new AsyncConn.Result<T>();
+    private T value;
+    private Throwable error;
+
+    private Task(AsyncConn.Work<T> work) {
+      this.work = work;
+    }
+    private void run(Conn c) throws SQLiteException {
+      value = work.run(c);
+    }
+    private void complete() {
+      if (error == null) {
+        result.complete(value);
+      } else {
+        result.fail(error);
+      }
+    }
+  }
+
+  private final Conn c;
+  private final int maxSize;
+  private final long maxDelayNanos;
+  private final BlockingQueue<Task<?>> queue = new LinkedBlockingQueue<Task<?>>();
+  private final Thread thread;
+  private boolean closed;
+  // statistics
+  private volatile long groups;
+  private volatile long tasks;
+
+  /**
+   * @param c        writer connection
+   * @param maxSize  maximum number of tasks per transaction
+   * @param maxDelay maximum time (ms) a task waits for the other tasks of its group
+   */
+  public GroupCommit(Conn c, int maxSize, long maxDelay) throws ConnException {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException(String.format("invalid group size: %d", maxSize));
+    }
+    c.checkOpen();
+    this.c = c;
+    this.maxSize = maxSize;
+    this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelay);
+    this.thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        loop();
+      }
+    }, "sqlite-jna-group-commit");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * @param work write task (must not commit nor roll back the transaction)
+   * @return result completed once the group is committed
+   */
+  public <T> AsyncConn.Result<T> submit(AsyncConn.Work<T> work) {
+    final Task<T> task = new Task<T>(work);
+    synchronized (this) {
+      if (!closed) {
+        queue.add(task);
+        return task.result;
+      }
+    }
+    task.result.fail(new ConnException(null, "group commit closed", ErrCodes.WRAPPER_SPECIFIC));
+    return task.result;
+  }
+
+  /**
+   * @return number of transactions committed (or attempted)
+   */
+  public long getGroupCount() {
+    return groups;
+  }
+  /**
+   * @return number of tasks run
+   */
+  public long getTaskCount() {
+    return tasks;
+  }
+
+  private void loop() {
+    final List<Task<?>> group = new ArrayList<Task<?>>(maxSize);
+    try {
+      run(group);
+    } finally { // closed or writer thread dying: no result must be left pending
+      synchronized (this) {
+        closed = true;
+      }
+      final ConnException stopped = new ConnException(null, "group commit stopped", ErrCodes.WRAPPER_SPECIFIC);
+      for (Task<?> task : group) { // no-op for the tasks already completed
+        task.result.fail(stopped);
+      }
+      Task<?> task;
+      while ((task = queue.poll()) != null) {
+        task.result.fail(stopped);
+      }
+    }
+  }
+  private void run(List<Task<?>> group) {
+    boolean stop = false;
+    while (!stop) {
+      try {
+        final Task<?> first = queue.take();
+        if (first == CLOSE) {
+          break;
+        }
+        group.add(first);
+        final long deadline = System.nanoTime() + maxDelayNanos;
+        while (group.size() < maxSize) {
+          final long timeout = deadline - System.nanoTime();
+          final Task<?> task = timeout > 0 ? queue.poll(timeout, TimeUnit.NANOSECONDS) : queue.poll();
+          if (task == null) {
+            break;
+          } else if (task == CLOSE) {
+            stop = true;
+            break;
+          }
+          group.add(task);
+        }
+      } catch (InterruptedException e) {
+        stop = true;
+      }
+      if (!group.isEmpty()) {
+        commit(group);
+        group.clear();
+      }
+    }
+  }
+
+  private void commit(List<Task<?>> group) {
+    groups++;
+    tasks += group.size();
+    Throwable error = null;
+    try {
+      c.fastExec("BEGIN IMMEDIATE");
+      for (Task<?> task : group) {
+        c.fastExec("SAVEPOINT group_task");
+        try {
+          task.run(c);
+          c.fastExec("RELEASE group_task");
+        } catch (SQLiteException | RuntimeException e) {
+          task.error = e;
+          if (c.getAutoCommit()) { // transaction rolled back by SQLite (or by the task)
+            throw new ConnException(c, "group transaction aborted by a task", ErrCodes.WRAPPER_SPECIFIC);
+          }
+          c.fastExec("ROLLBACK TO group_task; RELEASE group_task");
+        }
+      }
+      c.fastExec("COMMIT");
+    } catch (Throwable t) { // an Error stops the writer thread once the group is completed
+      error = t;
+      if (!c.getAutoCommit()) {
+        try {
+          c.fastExec("ROLLBACK");
+        } catch (ConnException ignored) {
+          // the original error is reported
+        }
+      }
+    }
+    for (Task<?> task : group) {
+      if (error != null && task.error == null) {
+        task.error = error;
+      }
+      task.complete();
+    }
+    if (error instanceof Error) {
+      throw (Error) error;
+    }
+  }
+
+  /**
+   * Waits for the pending tasks to be committed and stops the writer thread.
+   */
+  @Override
+  public void close() throws ConnException {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      queue.add(CLOSE);
+    }
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ConnException(null, "interrupted while closing group commit", ErrCodes.WRAPPER_SPECIFIC);
+    }
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import com.sun.jna.Pointer;
+
+import java.lang.ref.PhantomReference;
+
+/**
+ * Native handle of a connection, statement, blob or backup, released by its owner
+ * or, once the owner is unreachable, by the {@link Guards} it belongs to.
+ * The guard does not reference its owner.
+ */
+final class Guard extends PhantomReference<Object> {
+  static final int CONN = 0;
+  static final int STMT = 1;
+  static final int BLOB = 2;
+  static final int BACKUP = 3;
+  private static final String[] NAMES = {"Conn", "Stmt", "Blob", "Backup"};
+
+  private final int kind;
+  // null once released
+  private Pointer handle;
+  // statements, blobs and backups of a connection (CONN only)
+  private final Guards children;
+  // allocation site sampled by the leak detector or null
+  final Throwable allocation;
+  // list of live guards (see Guards)
+  Guard prev, next;
+
+  Guard(Object owner, Guards guards, int kind, Pointer handle, Guards children) {
+    super(owner, guards.queue);
+    this.kind = kind;
+    this.handle = handle;
+    this.children = children;
+    this.allocation = LeakDetector.allocation();
+  }
+
+  /**
+   * @param leaked true when the owner is unreachable (callbacks may have been collected)
+   * @return result code
+   */
+  synchronized int release(boolean leaked) {
+    final Pointer p = handle;
+    if (p == null) {
+      return SQLite.SQLITE_OK;
+    }
+    handle = null;
+    switch (kind) {
+      case CONN:
+        children.releaseAll();
+        if (leaked) {
+          SQLite.sqlite3_trace_v2(p, 0, null, null);
+          SQLite.sqlite3_busy_handler(p, null, null);
+          SQLite.sqlite3_progress_handler(p, 0, null, null);
+        }
+        // statements not guarded anymore (idle ones kept by the statement cache of a leaked connection)
+        Pointer pStmt;
+        while ((pStmt = SQLite.sqlite3_next_stmt(p, null)) != null) {
+          SQLite.sqlite3_finalize(pStmt);
+        }
+        return SQLite.sqlite3_close(p);
+      case STMT:
+        return SQLite.sqlite3_finalize(p);
+      case BLOB:
+        return SQLite.sqlite3_blob_close(p);
+      case BACKUP:
+        return SQLite.sqlite3_backup_finish(p);
+      default:
+        throw new AssertionError(kind);
+    }
+  }
+
+  // Called instead of release when the handle is handed over
+  synchronized Pointer detach() {
+    final Pointer p = handle;
+    handle = null;
+    return p;
+  }
+
+  // Called before release
+  synchronized String describe() {
+    final Pointer p = handle;
+    if (p == null) {
+      return NAMES[kind];
+    } else if (kind == CONN) {
+      return String.format("%s '%s'", NAMES[kind], SQLite.sqlite3_db_filename(p, "main"));
+    } else if (kind == STMT) {
+      return String.format("%s '%s'", NAMES[kind], SQLite.sqlite3_sql(p));
+    }
+    return NAMES[kind];
+  }
+}
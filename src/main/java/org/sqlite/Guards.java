@@ -0,0 +1,112 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import com.sun.jna.Pointer;
+
+import java.lang.ref.ReferenceQueue;
+
+/**
+ * Live guards of a connection's statements, blobs and backups (or of all connections).
+ * Replaces finalization: the guards of unreachable owners are queued by the GC and
+ * released by {@link #drain()}, called by the thread using the connection.
+ */
+final class Guards {
+  final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+  // doubly linked list keeping the guards reachable until released
+  private Guard head;
+
+  synchronized Guard add(Object owner, int kind, Pointer handle, Guards children) {
+    final Guard g = new Guard(owner, this, kind, handle, children);
+    g.next = head;
+    if (head != null) {
+      head.prev = g;
+    }
+    head = g;
+    return g;
+  }
+
+  /**
+   * Called by the owner when closed.
+   * @return result code
+   */
+  int release(Guard g) {
+    synchronized (this) {
+      unlink(g);
+    }
+    g.clear();
+    return g.release(false);
+  }
+
+  /**
+   * Called by the owner when its handle is handed over (not released).
+   * @return the handle or null if already released
+   */
+  Pointer detach(Guard g) {
+    synchronized (this) {
+      unlink(g);
+    }
+    g.clear();
+    return g.detach();
+  }
+
+  /**
+   * Releases the guards of unreachable owners (reported to the leak detector).
+   */
+  void drain() {
+    Guard g;
+    while ((g = (Guard) queue.poll()) != null) {
+      synchronized (this) {
+        if (!unlink(g)) {
+          continue; // already released
+        }
+      }
+      LeakDetector.leaked(g, false);
+      g.release(true);
+    }
+  }
+
+  /**
+   * Called when the connection is closed: the owners still open are released (dangling).
+   */
+  void releaseAll() {
+    while (true) {
+      final Guard g;
+      synchronized (this) {
+        g = head;
+        if (g == null) {
+          return;
+        }
+        unlink(g);
+      }
+      g.clear();
+      if (g.allocation != null) { // only reported when sampled: closing the connection is a legitimate cleanup
+        LeakDetector.leaked(g, true);
+      }
+      g.release(false);
+    }
+  }
+
+  private boolean unlink(Guard g) {
+    if (g.prev == null && head != g) {
+      return false;
+    }
+    if (g.prev == null) {
+      head = g.next;
+    } else {
+      g.prev.next = g.next;
+    }
+    if (g.next != null) {
+      g.next.prev = g.prev;
+    }
+    g.prev = null;
+    g.next = null;
+    return true;
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import java.util.Arrays;
+
+/**
+ * Histogram with power-of-two buckets: bucket 0 counts zeros, bucket i counts values in [2^(i-1), 2^i).
+ */
+public class Histogram {
+  private final long[] buckets = new long[64];
+  private long count;
+  private long sum;
+  private long max;
+
+  /**
+   * @param value must be positive or zero
+   */
+  public synchronized void record(long value) {
+    buckets[64 - Long.numberOfLeadingZeros(value)]++;
+    count++;
+    sum += value;
+    if (value > max) {
+      max = value;
+    }
+  }
+
+  public synchronized long getCount() {
+    return count;
+  }
+  public synchronized long getSum() {
+    return sum;
+  }
+  public synchronized long getMax() {
+    return max;
+  }
+  public synchronized double getMean() {
+    return count == 0 ? 0 : (double) sum / count;
+  }
+  /**
+   * @param q quantile in [0, 1]
+   * @return upper bound of the bucket containing the quantile
+   */
+  public synchronized long getQuantile(double q) {
+    final long rank = (long) Math.ceil(q * count);
+    long seen = 0;
+    for (int i = 0; i < buckets.length; i++) {
+      seen += buckets[i];
+      if (seen >= rank && seen > 0) {
+        return i == 0 ? 0 : Math.min(max, (1L << i) - 1);
+      }
+    }
+    return max;
+  }
+  /**
+   * @return copy of the buckets
+   */
+  public synchronized long[] getBuckets() {
+    return Arrays.copyOf(buckets, buckets.length);
+  }
+
+  /**
+   * @param other histogram whose values are added to this one
+   */
+  public void add(Histogram other) {
+    final long[] buckets;
+    final long count, sum, max;
+    synchronized (other) {
+      buckets = other.getBuckets();
+      count = other.count;
+      sum = other.sum;
+      max = other.max;
+    }
+    synchronized (this) {
+      for (int i = 0; i < buckets.length; i++) {
+        this.buckets[i] += buckets[i];
+      }
+      this.count += count;
+      this.sum += sum;
+      if (max > this.max) {
+        this.max = max;
+      }
+    }
+  }
+
+  public synchronized void reset() {
+    Arrays.fill(buckets, 0);
+    count = 0;
+    sum = 0;
+    max = 0;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("count: %d, mean: %.1f, p50: %d, p99: %d, max: %d",
+        count, getMean(), getQuantile(0.5), getQuantile(0.99), max);
+  }
+}
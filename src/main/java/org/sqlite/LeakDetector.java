@@ -0,0 +1,114 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reports the connections, statements, blobs and backups not closed by their owner.
+ * Disabled by default: enable it with {@link #enable(int)} or with the system property
+ * "org.sqlite.leakDetection" (sampling rate).
+ * The allocation site (stack trace) of one resource out of N is recorded.
+ * Leaks are detected when the GC finds the owner unreachable but there is no background thread:
+ * leaked statements, blobs and backups are only released and reported on the next prepare (or close)
+ * of their connection, leaked connections on the next open.
+ * So a leak may never be reported if its connection is idle or no connection is opened anymore.
+ * By default, leaks are logged as warnings to the <code>org.sqlite.LeakDetector</code> {@link Logger}.
+ */
+public final class LeakDetector {
+  public interface Reporter {
+    /**
+     * @param resource   description of the resource (type and SQL or file name)
+     * @param allocation allocation site or null when not sampled
+     * @param dangling   true when the resource was still open when its connection was closed (not a leak strictly speaking)
+     */
+    void leaked(String resource, Throwable allocation, boolean dangling);
+  }
+
+  private static final Logger LOG = Logger.getLogger(LeakDetector.class.getName());
+  private static final Reporter LOGGER = new Reporter() {
+    @Override
+    public void leaked(String resource, Throwable allocation, boolean dangling) {
+      final String msg = String.format(dangling ? "%s not closed before its connection" : "%s not closed (leaked)", resource);
+      if (allocation == null) {
+        LOG.warning(msg);
+      } else {
+        LOG.log(Level.WARNING, msg + ", allocated at:", allocation);
+      }
+    }
+  };
+
+  // 0: disabled
+  private static volatile int sampling;
+  private static volatile Reporter reporter = LOGGER;
+  private static final AtomicLong leaks = new AtomicLong();
+  private static int allocations; // racy on purpose: only used for sampling
+
+  static {
+    final String property = System.getProperty("org.sqlite.leakDetection");
+    if (property != null) {
+      try {
+        sampling = Integer.parseInt(property.trim());
+      } catch (NumberFormatException e) {
+        LOG.warning(String.format("invalid org.sqlite.leakDetection: '%s'", property));
+      }
+    }
+  }
+
+  private LeakDetector() {
+  }
+
+  /**
+   * @param sampling 1 to record the allocation site of every resource, N for one resource out of N
+   */
+  public static void enable(int sampling) {
+    if (sampling <= 0) {
+      throw new IllegalArgumentException(String.format("invalid sampling: %d", sampling));
+    }
+    LeakDetector.sampling = sampling;
+  }
+  public static void disable() {
+    sampling = 0;
+  }
+  public static boolean isEnabled() {
+    return sampling > 0;
+  }
+  /**
+   * @param reporter null to restore the default (logger)
+   */
+  public static void setReporter(Reporter reporter) {
+    LeakDetector.reporter = reporter == null ? LOGGER : reporter;
+  }
+  /**
+   * @return number of resources released because their owner was unreachable (even if disabled)
+   */
+  public static long getLeaks() {
+    return leaks.get();
+  }
+
+  // Sampled allocation site or null
+  static Throwable allocation() {
+    final int s = sampling;
+    if (s <= 0 || (s > 1 && allocations++ % s != 0)) {
+      return null;
+    }
+    return new Throwable("allocation site");
+  }
+
+  static void leaked(Guard g, boolean dangling) {
+    if (!dangling) {
+      leaks.incrementAndGet();
+    }
+    if (sampling > 0) {
+      reporter.leaked(g.describe(), g.allocation, dangling);
+    }
+  }
+}
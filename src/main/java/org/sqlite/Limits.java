@@ -0,0 +1,27 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+/**
+ * Run-time limit categories (see {@link Conn#getLimit(int)}).
+ */
+public interface Limits {
+  int SQLITE_LIMIT_LENGTH = 0;
+  int SQLITE_LIMIT_SQL_LENGTH = 1;
+  int SQLITE_LIMIT_COLUMN = 2;
+  int SQLITE_LIMIT_EXPR_DEPTH = 3;
+  int SQLITE_LIMIT_COMPOUND_SELECT = 4;
+  int SQLITE_LIMIT_VDBE_OP = 5;
+  int SQLITE_LIMIT_FUNCTION_ARG = 6;
+  int SQLITE_LIMIT_ATTACHED = 7;
+  int SQLITE_LIMIT_LIKE_PATTERN_LENGTH = 8;
+  int SQLITE_LIMIT_VARIABLE_NUMBER = 9;
+  int SQLITE_LIMIT_TRIGGER_DEPTH = 10;
+  int SQLITE_LIMIT_WORKER_THREADS = 11;
+}
@@ -0,0 +1,101 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazy iteration over the rows of a statement: one row is stepped and mapped at a time.
+ * The statement is reset (or closed) once exhausted, when mapping fails or when the iterator is closed
+ * (use try-with-resources when the iteration may stop early).
+ * Errors are reported as {@link UncheckedSQLiteException}.
+ * An iterator can be used only once.
+ */
+public class RowIterator<T> implements Iterator<T>, Iterable<T>, AutoCloseable {
+  private static final int UNKNOWN = 0, READY = 1, DONE = 2;
+
+  private final Stmt s;
+  private final RowMapper<T> mapper;
+  private final boolean closeStmt;
+  private int state;
+  private long rows;
+
+  RowIterator(Stmt s, RowMapper<T> mapper, boolean closeStmt) {
+    this.s = s;
+    this.mapper = mapper;
+    this.closeStmt = closeStmt;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (state == UNKNOWN) {
+      try {
+        if (s.step()) {
+          state = READY;
+        } else {
+          close();
+        }
+      } catch (StmtException e) {
+        close();
+        throw new UncheckedSQLiteException(e);
+      }
+    }
+    return state == READY;
+  }
+  @Override
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    state = UNKNOWN;
+    rows++;
+    try {
+      return mapper.map(s);
+    } catch (SQLiteException e) {
+      close();
+      throw new UncheckedSQLiteException(e);
+    }
+  }
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+  @Override
+  public Iterator<T> iterator() {
+    return this;
+  }
+
+  /**
+   * @return number of rows returned so far
+   */
+  public long getRowCount() {
+    return rows;
+  }
+
+  /**
+   * Resets or closes the statement (no exception is thrown).
+   */
+  @Override
+  public void close() {
+    if (state == DONE) {
+      return;
+    }
+    state = DONE;
+    if (closeStmt) {
+      s.close();
+    } else if (!s.isClosed()) {
+      try {
+        s.reset();
+      } catch (StmtException e) {
+        // the error has already been reported by step
+      }
+    }
+  }
+}
@@ -0,0 +1,16 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+/**
+ * Maps the current row of a statement (see {@link Stmt#iterate(RowMapper)}).
+ */
+public interface RowMapper<T> {
+  T map(Stmt s) throws SQLiteException;
+}
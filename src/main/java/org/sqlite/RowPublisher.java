@@ -0,0 +1,203 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Demand-driven query (Reactive Streams protocol, see {@link Conn#publish(String, RowMapper, Object...)}):
+ * each subscriber gets its own execution of the statement, stepped on the connection's executor
+ * exactly as many rows as requested.
+ * Cancelling stops stepping before the next row and closes the statement
+ * (the step in progress, if any, is not interrupted: other statements of the connection are left untouched).
+ * Subscribers are notified with an error when the connection is closed while rows are pending.
+ * The nested interfaces mirror java.util.concurrent.Flow (Java 9) so that adapters are trivial.
+ */
+public class RowPublisher<T> {
+  public interface Subscriber<T> {
+    void onSubscribe(Subscription subscription);
+    void onNext(T item);
+    void onError(Throwable throwable);
+    void onComplete();
+  }
+  public interface Subscription {
+    void request(long n);
+    void cancel();
+  }
+
+  private final Conn c;
+  private final String sql;
+  private final Object[] params;
+  private final RowMapper<T> mapper;
+
+  RowPublisher(Conn c, String sql, RowMapper<T> mapper, Object[] params) {
+    this.c = c;
+    this.sql = sql;
+    this.mapper = mapper;
+    this.params = params;
+  }
+
+  public void subscribe(Subscriber<? super T> subscriber) {
+    if (subscriber == null) {
+      throw new NullPointerException("subscriber");
+    }
+    final Executor executor;
+    try {
+      executor = c.getExecutor();
+    } catch (ConnException e) {
+      subscriber.onSubscribe(new Sub<T>(null, null, null));
+      subscriber.onError(e);
+      return;
+    }
+    subscriber.onSubscribe(new Sub<T>(this, subscriber, executor));
+  }
+
+  private static final class Sub<T> implements Subscription, Runnable {
+    private final RowPublisher<T> p;
+    private final Subscriber<? super T> subscriber;
+    private final Executor executor;
+    private final AtomicLong demand = new AtomicLong();
+    private volatile boolean cancelled;
+    // executor thread only
+    private Stmt s;
+    private boolean done;
+
+    private Sub(RowPublisher<T> p, Subscriber<? super T> subscriber, Executor executor) {
+      this.p = p;
+      this.subscriber = subscriber;
+      this.executor = executor;
+      this.cancelled = p == null;
+    }
+
+    @Override
+    public void request(long n) {
+      if (cancelled) {
+        return;
+      }
+      if (n <= 0) { // signalled on the executor, not concurrently with onNext
+        cancelled = true;
+        final IllegalArgumentException error = new IllegalArgumentException(String.format("non-positive request: %d", n));
+        schedule(new Runnable() {
+          @Override
+          public void run() {
+            release();
+            subscriber.onError(error);
+          }
+        }, error);
+        return;
+      }
+      long current, next;
+      do {
+        current = demand.get();
+        next = current + n < 0 ? Long.MAX_VALUE : current + n; // capped
+      } while (!demand.compareAndSet(current, next));
+      if (current == 0) {
+        schedule(this, null);
+      }
+    }
+
+    @Override
+    public void cancel() {
+      if (cancelled) {
+        return;
+      }
+      cancelled = true; // checked before each step
+      schedule(new Runnable() {
+        @Override
+        public void run() {
+          release();
+        }
+      }, null);
+    }
+
+    // @param failure signalled by the task (null if none)
+    private void schedule(Runnable task, final Throwable failure) {
+      try {
+        executor.execute(new FutureTask<Void>(task, null) {
+          @Override
+          protected void done() {
+            if (isCancelled()) { // connection closed before the task ran
+              closed(failure);
+            }
+          }
+        });
+      } catch (RejectedExecutionException e) { // connection closed
+        closed(failure);
+      }
+    }
+    // No task of this subscription can run anymore.
+    private void closed(Throwable failure) {
+      if (failure != null) {
+        subscriber.onError(failure);
+      } else if (!cancelled) {
+        cancelled = true;
+        subscriber.onError(new ConnException(null, "connection closed", ErrCodes.WRAPPER_SPECIFIC));
+      }
+    }
+
+    // Steps as many rows as requested (executor thread).
+    @Override
+    public void run() {
+      long requested = demand.get();
+      while (true) {
+        long emitted = 0;
+        while (emitted < requested) {
+          if (cancelled || done) {
+            release();
+            return;
+          }
+          final T item;
+          try {
+            if (s == null) {
+              s = p.c.prepare(p.sql);
+              s.bind(p.params);
+            }
+            final boolean hasRow = s.step();
+            if (!hasRow) {
+              done = true;
+              release();
+              subscriber.onComplete();
+              return;
+            }
+            item = p.mapper.map(s);
+          } catch (SQLiteException | RuntimeException e) { // including mapper failures
+            done = true;
+            release();
+            if (!cancelled) {
+              subscriber.onError(e);
+            }
+            return;
+          }
+          try {
+            subscriber.onNext(item);
+          } catch (RuntimeException e) { // subscription considered cancelled
+            cancelled = true;
+            release();
+            throw e;
+          }
+          emitted++;
+        }
+        requested = demand.addAndGet(-emitted);
+        if (requested == 0) {
+          return;
+        }
+      }
+    }
+
+    private void release() {
+      if (s != null) {
+        s.close();
+        s = null;
+      }
+    }
+  }
+}
@@ -8,10 +8,13 @@
  */
 package org.sqlite;
 
+import com.sun.jna.Callback;
 import com.sun.jna.Library;
 import com.sun.jna.Memory;
 import com.sun.jna.Native;
 import com.sun.jna.Pointer;
+import com.sun.jna.ptr.IntByReference;
+import com.sun.jna.ptr.LongByReference;
 import com.sun.jna.ptr.PointerByReference;
 
 import java.nio.ByteBuffer;
@@ -31,6 +34,7 @@ public class SQLite implements Library {
   static final int SQLITE_TRANSIENT = -1;
 
   static native String sqlite3_libversion(); // no copy needed
+  static native int sqlite3_libversion_number();
   static native boolean sqlite3_threadsafe();
 
   static native String sqlite3_errmsg(Pointer pDb); // copy needed: the error string might be overwritten or deallocated by subsequent calls to other SQLite interface functions.
@@ -43,12 +47,18 @@ public class SQLite implements Library {
   static native int sqlite3_close(Pointer pDb);
   static native void sqlite3_interrupt(Pointer pDb);
   static native int sqlite3_busy_timeout(Pointer pDb, int ms);
+  static native int sqlite3_busy_handler(Pointer pDb, BusyCallback xBusy, Pointer pArg);
 
-  // int sqlite3_limit(sqlite3*, int id, int newVal);
+  static native void sqlite3_progress_handler(Pointer pDb, int nOps, ProgressCallback xProgress, Pointer pArg);
+  static native int sqlite3_trace_v2(Pointer pDb, int uMask, TraceCallback xCallback, Pointer pCtx);
+
+  static native int sqlite3_limit(Pointer pDb, int id, int newVal);
   static native boolean sqlite3_get_autocommit(Pointer pDb);
 
   static native int sqlite3_changes(Pointer pDb);
   static native int sqlite3_total_changes(Pointer pDb);
+  static native int sqlite3_db_status(Pointer pDb, int op, IntByReference pCur, IntByReference pHiwtr, boolean resetFlg);
+  static native int sqlite3_status64(int op, LongByReference pCurrent, LongByReference pHighwater, boolean resetFlag);
   static native long sqlite3_last_insert_rowid(Pointer pDb);
 
   static native String sqlite3_db_filename(Pointer pDb, String dbName); // no copy needed
@@ -63,11 +73,13 @@ public class SQLite implements Library {
   static native int sqlite3_prepare_v2(Pointer pDb, Pointer sql, int nByte, PointerByReference ppStmt,
                                        PointerByReference pTail);
   static native String sqlite3_sql(Pointer pStmt); // no copy needed
+  static native Pointer sqlite3_expanded_sql(Pointer pStmt); // must be freed with sqlite3_free
   static native int sqlite3_finalize(Pointer pStmt);
   static native int sqlite3_step(Pointer pStmt);
   static native int sqlite3_reset(Pointer pStmt);
   static native int sqlite3_clear_bindings(Pointer pStmt);
   static native boolean sqlite3_stmt_busy(Pointer pStmt);
+  static native int sqlite3_stmt_status(Pointer pStmt, int op, boolean reset);
 
   static native int sqlite3_column_count(Pointer pStmt);
   static native int sqlite3_data_count(Pointer pStmt);
@@ -101,11 +113,14 @@ public class SQLite implements Library {
   //static native int sqlite3_bind_value(Pointer pStmt, int i, const sqlite3_value*);
   static native int sqlite3_bind_zeroblob(Pointer pStmt, int i, int n);
 
+  static native int sqlite3_exec(Pointer pDb, String cmd, Pointer c, Pointer udp, PointerByReference errMsg); // no copy needed
+
   static native int sqlite3_enable_load_extension(Pointer pDb, int onoff);
   static native int sqlite3_load_extension(Pointer pDb, String zFile, String zProc, PointerByReference pzErrMsg);
 
   static native Pointer sqlite3_mprintf(String zFormat, String arg); // no copy needed for args
   static native void sqlite3_free(Pointer p);
+  static native int sqlite3_db_release_memory(Pointer pDb);
 
   static native int sqlite3_blob_open(Pointer pDb, String dbName, String tableName, String columnName,
                                       long iRow, boolean flags, PointerByReference ppBlob); // no copy needed
@@ -121,6 +136,34 @@ public class SQLite implements Library {
   static native int sqlite3_backup_pagecount(Pointer pBackup);
   static native int sqlite3_backup_finish(Pointer pBackup);
 
+  public interface ProgressCallback extends Callback {
+    /**
+     * @param arg null
+     * @return non-zero to interrupt the current operation (SQLITE_INTERRUPT)
+     */
+    int invoke(Pointer arg);
+  }
+
+  public interface BusyCallback extends Callback {
+    /**
+     * @param arg   null
+     * @param count number of times the handler has been invoked previously for the same locking event
+     * @return zero to give up (SQLITE_BUSY), non-zero to retry
+     */
+    int invoke(Pointer arg, int count);
+  }
+
+  public interface TraceCallback extends Callback {
+    /**
+     * @param type org.sqlite.TraceMasks.*
+     * @param ctx  null
+     * @param p    statement handle (connection handle for SQLITE_TRACE_CLOSE)
+     * @param x    SQL text (STMT), pointer to the duration in nanoseconds (PROFILE) or unused
+     * @return ignored
+     */
+    int invoke(int type, Pointer ctx, Pointer p, Pointer x);
+  }
+
   static Pointer nativeString(String sql) { // TODO Check encoding?
     byte[] data = sql.getBytes();
     final Pointer pointer = new Memory(data.length + 1);
@@ -0,0 +1,319 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.PointerByReference;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+/**
+ * SQL script runner: the script is encoded to native memory once and each statement is prepared in place,
+ * the next one starting at the tail returned by SQLite (the remaining script is never copied back to Java).
+ * A script read from a {@link Reader} is executed by blocks of complete statements: each char is scanned once
+ * (like <code>sqlite3_complete</code>, incrementally) so that scripts without line breaks are cut too,
+ * and memory is bounded by the block size plus the largest statement.
+ * Rows returned by a statement are not expected (see {@link Stmt#exec()}).
+ */
+public class Script {
+  static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int BLOCK_SIZE = 64 * 1024; // chars
+
+  /**
+   * Per-statement progress notification.
+   */
+  public interface Listener {
+    /**
+     * @param index  0-based index of the statement in the script
+     * @param sql    statement executed
+     * @param offset number of UTF-8 bytes of the script consumed so far
+     */
+    void executed(int index, String sql, long offset);
+  }
+
+  private final Conn c;
+  private final Listener listener;
+  private int count;
+  private long offset;
+
+  public Script(Conn c) {
+    this(c, null);
+  }
+  /**
+   * @param listener may be null
+   */
+  public Script(Conn c, Listener listener) {
+    this.c = c;
+    this.listener = listener;
+  }
+
+  /**
+   * @return number of statements executed
+   */
+  public int getStatementCount() {
+    return count;
+  }
+  /**
+   * @return number of UTF-8 bytes of the script consumed
+   */
+  public long getOffset() {
+    return offset;
+  }
+
+  /**
+   * Executes all the statements, stops at the first failure.
+   * @return number of statements executed by this call
+   */
+  public int run(String script) throws ConnException, StmtException {
+    final int start = count;
+    final byte[] bytes = script.getBytes(UTF_8);
+    exec(encode(bytes), bytes.length);
+    return count - start;
+  }
+
+  /**
+   * Executes all the statements read from <code>reader</code> (not closed), stops at the first failure.
+   * @return number of statements executed by this call
+   */
+  public int run(Reader reader) throws SQLiteException, IOException {
+    final int start = count;
+    final char[] buf = new char[BLOCK_SIZE];
+    final StringBuilder pending = new StringBuilder();
+    final Splitter splitter = new Splitter(pending);
+    int read;
+    while ((read = reader.read(buf)) >= 0) {
+      pending.append(buf, 0, read);
+      final int end = splitter.scan();
+      if (pending.length() >= BLOCK_SIZE && end > 0) {
+        final byte[] bytes = pending.substring(0, end).getBytes(UTF_8);
+        exec(encode(bytes), bytes.length);
+        pending.delete(0, end);
+        splitter.shift(end);
+      } // else the block ends inside a statement, a literal or a trigger body: more input is needed
+    }
+    if (pending.length() > 0) {
+      final byte[] bytes = pending.toString().getBytes(UTF_8);
+      exec(encode(bytes), bytes.length);
+    }
+    return count - start;
+  }
+
+  /**
+   * Executes all the statements of a UTF-8 file, stops at the first failure.
+   * @return number of statements executed by this call
+   */
+  public int run(File file) throws SQLiteException, IOException {
+    try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8))) {
+      return run(reader);
+    }
+  }
+
+  private void exec(Pointer pScript, int nBytes) throws ConnException, StmtException {
+    final PointerByReference ppTail = new PointerByReference();
+    int pos = 0;
+    while (pos < nBytes) {
+      final Pointer pSql = pScript.share(pos);
+      final Stmt s = c.prepare(pSql, nBytes - pos, ppTail);
+      final int consumed = (int) (Pointer.nativeValue(ppTail.getValue()) - Pointer.nativeValue(pSql));
+      pos += consumed;
+      offset += consumed;
+      if (s == null) { // comment or white-space
+        if (consumed <= 0) {
+          break;
+        }
+        continue;
+      }
+      final String sql;
+      try {
+        s.exec();
+        sql = listener == null ? null : s.getSql();
+      } finally {
+        s.close();
+      }
+      if (listener != null) {
+        listener.executed(count, sql, offset);
+      }
+      count++;
+    }
+  }
+
+  /**
+   * Incremental port of <code>sqlite3_complete</code> (including the trigger bodies):
+   * the chars already scanned are not scanned again when more input is appended.
+   */
+  private static final class Splitter {
+    // tokens
+    private static final int SEMI = 0;
+    private static final int WS = 1;
+    private static final int OTHER = 2;
+    private static final int EXPLAIN = 3;
+    private static final int CREATE = 4;
+    private static final int TEMP = 5;
+    private static final int TRIGGER = 6;
+    private static final int END = 7;
+    // states: 0 invalid, 1 start, 2 normal, 3 explain, 4 create, 5 trigger, 6 semi, 7 end
+    private static final int START = 1;
+    private static final int[][] TRANS = {
+        {1, 0, 2, 3, 4, 2, 2, 2},
+        {1, 1, 2, 3, 4, 2, 2, 2},
+        {1, 2, 2, 2, 2, 2, 2, 2},
+        {1, 3, 3, 2, 4, 2, 2, 2},
+        {1, 4, 2, 2, 2, 4, 5, 2},
+        {6, 5, 5, 5, 5, 5, 5, 5},
+        {6, 6, 5, 5, 5, 5, 5, 7},
+        {1, 7, 5, 5, 5, 5, 5, 5},
+    };
+
+    private final StringBuilder sql;
+    private int state;
+    private int pos; // start of the next token
+    private int searched; // chars of an incomplete token already searched (0 if none)
+    private int end; // end of the last complete statement (0 if none)
+
+    private Splitter(StringBuilder sql) {
+      this.sql = sql;
+    }
+
+    /**
+     * @return end of the last complete statement (0 if none)
+     */
+    private int scan() {
+      final int len = sql.length();
+      while (pos < len) {
+        final char ch = sql.charAt(pos);
+        final int token;
+        int next;
+        switch (ch) {
+          case ';':
+            token = SEMI;
+            next = pos + 1;
+            break;
+          case ' ':
+          case '\t':
+          case '\n':
+          case '\f':
+          case '\r':
+            token = WS;
+            next = pos + 1;
+            break;
+          case '/':
+          case '-':
+            if (pos + 1 >= len) {
+              return end;
+            }
+            if (sql.charAt(pos + 1) != (ch == '/' ? '*' : '-')) {
+              token = OTHER;
+              next = pos + 1;
+              break;
+            }
+            final String close = ch == '/' ? "*/" : "\n";
+            next = sql.indexOf(close, Math.max(pos + 2, searched - close.length() + 1));
+            if (next < 0) {
+              searched = len;
+              return end;
+            }
+            token = WS;
+            next += close.length();
+            break;
+          case '[':
+          case '`':
+          case '"':
+          case '\'':
+            next = sql.indexOf(ch == '[' ? "]" : String.valueOf(ch), Math.max(pos + 1, searched));
+            if (next < 0) {
+              searched = len;
+              return end;
+            }
+            token = OTHER;
+            next++;
+            break;
+          default:
+            if (!isIdChar(ch)) {
+              token = OTHER;
+              next = pos + 1;
+              break;
+            }
+            next = Math.max(pos + 1, searched);
+            while (next < len && isIdChar(sql.charAt(next))) {
+              next++;
+            }
+            if (next == len) { // the identifier may go on
+              searched = len;
+              return end;
+            }
+            token = keyword(pos, next);
+        }
+        state = TRANS[state][token];
+        pos = next;
+        searched = 0;
+        if (token == SEMI && state == START) {
+          end = pos;
+        }
+      }
+      return end;
+    }
+
+    // Called when the first n chars have been removed
+    private void shift(int n) {
+      pos -= n;
+      if (searched > 0) {
+        searched -= n;
+      }
+      end = end > n ? end - n : 0;
+    }
+
+    private int keyword(int from, int to) {
+      switch (Character.toLowerCase(sql.charAt(from))) {
+        case 'c':
+          return matches(from, to, "create") ? CREATE : OTHER;
+        case 't':
+          if (matches(from, to, "trigger")) {
+            return TRIGGER;
+          }
+          return matches(from, to, "temp") || matches(from, to, "temporary") ? TEMP : OTHER;
+        case 'e':
+          if (matches(from, to, "end")) {
+            return END;
+          }
+          return matches(from, to, "explain") ? EXPLAIN : OTHER;
+        default:
+          return OTHER;
+      }
+    }
+    private boolean matches(int from, int to, String keyword) {
+      if (to - from != keyword.length()) {
+        return false;
+      }
+      for (int i = 0; i < keyword.length(); i++) {
+        if (Character.toLowerCase(sql.charAt(from + i)) != keyword.charAt(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    private static boolean isIdChar(char ch) {
+      return ch >= 0x80 || Character.isLetterOrDigit(ch) || ch == '_' || ch == '$';
+    }
+  }
+
+  // null-terminated copy
+  private static Memory encode(byte[] bytes) {
+    final Memory m = new Memory(bytes.length + 1);
+    m.write(0, bytes, 0, bytes.length);
+    m.setByte(bytes.length, (byte) 0);
+    return m;
+  }
+}
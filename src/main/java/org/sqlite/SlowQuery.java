@@ -0,0 +1,91 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import java.util.Locale;
+
+/**
+ * Execution that took longer than the {@link SlowQueryLog} threshold.
+ */
+public class SlowQuery {
+  private final long timestamp;
+  private final String sql;
+  private final String expandedSql;
+  private final long duration;
+  private final long rows;
+  private final String plan;
+  private final long suppressed;
+
+  SlowQuery(String sql, String expandedSql, long duration, long rows, String plan, long suppressed) {
+    this.timestamp = System.currentTimeMillis();
+    this.sql = sql;
+    this.expandedSql = expandedSql;
+    this.duration = duration;
+    this.rows = rows;
+    this.plan = plan;
+    this.suppressed = suppressed;
+  }
+
+  /**
+   * @return end of the execution (System.currentTimeMillis)
+   */
+  public long getTimestamp() {
+    return timestamp;
+  }
+  /**
+   * @return SQL text (with parameters)
+   */
+  public String getSql() {
+    return sql;
+  }
+  /**
+   * @return SQL text with bound parameters expanded (may be null)
+   */
+  public String getExpandedSql() {
+    return expandedSql;
+  }
+  /**
+   * @return time spent stepping in nanoseconds
+   */
+  public long getDuration() {
+    return duration;
+  }
+  /**
+   * @return number of rows returned
+   */
+  public long getRows() {
+    return rows;
+  }
+  /**
+   * @return EXPLAIN QUERY PLAN output (one line per node, indented by depth) or null
+   */
+  public String getPlan() {
+    return plan;
+  }
+  /**
+   * @return number of slow executions not logged (rate limit) since the previous record
+   */
+  public long getSuppressed() {
+    return suppressed;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append(String.format(Locale.ROOT, "slow query (%.3f ms, %d rows): %s", duration / 1e6, rows,
+        expandedSql == null ? sql : expandedSql));
+    if (suppressed > 0) {
+      sb.append(String.format(" (%d suppressed)", suppressed));
+    }
+    if (plan != null && !plan.isEmpty()) {
+      sb.append('\n').append(plan);
+    }
+    return sb.toString();
+  }
+}
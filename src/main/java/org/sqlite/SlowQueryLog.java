@@ -0,0 +1,126 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records the executions whose stepping time exceeds a threshold (see {@link Conn#setSlowQueryLog(SlowQueryLog)}).
+ * Each record contains the SQL with its bound parameters expanded, the duration, the number of rows
+ * and the query plan (captured once per SQL text).
+ * At most maxPerSecond records are logged per second, the others are counted as suppressed.
+ * Nothing is allocated for executions below the threshold.
+ * An instance may be shared by many connections.
+ */
+public class SlowQueryLog {
+  public static final int DEFAULT_MAX_PER_SECOND = 10;
+  private static final Logger LOG = Logger.getLogger(SlowQueryLog.class.getName());
+  // number of query plans kept
+  private static final int MAX_PLANS = 100;
+
+  private final long threshold;
+  private final int maxPerSecond;
+
+  // rate limiting: start (System.nanoTime) of the current one second window
+  private long windowStart;
+  private int logged;
+  private long suppressed;
+  private long totalSuppressed;
+
+  // query plan by SQL text (LRU)
+  private final Map<String, String> plans = new LinkedHashMap<String, String>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+      return size() > MAX_PLANS;
+    }
+  };
+
+  /**
+   * @param thresholdMillis minimal duration logged
+   */
+  public SlowQueryLog(long thresholdMillis) {
+    this(thresholdMillis, DEFAULT_MAX_PER_SECOND);
+  }
+  /**
+   * @param thresholdMillis minimal duration logged
+   * @param maxPerSecond    rate limit
+   */
+  public SlowQueryLog(long thresholdMillis, int maxPerSecond) {
+    this.threshold = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    this.maxPerSecond = maxPerSecond;
+  }
+
+  /**
+   * @return threshold in milliseconds
+   */
+  public long getThreshold() {
+    return TimeUnit.NANOSECONDS.toMillis(threshold);
+  }
+  public int getMaxPerSecond() {
+    return maxPerSecond;
+  }
+  /**
+   * @return number of slow executions not logged because of the rate limit
+   */
+  public synchronized long getSuppressed() {
+    return totalSuppressed;
+  }
+
+  boolean isSlow(long duration) {
+    return duration >= threshold;
+  }
+
+  // Called by the statement once reset (no exception is thrown).
+  void record(Stmt s, String sql, long duration, long rows) {
+    final long suppressed;
+    String plan;
+    synchronized (this) {
+      final long now = System.nanoTime();
+      if (logged == 0 || now - windowStart >= TimeUnit.SECONDS.toNanos(1)) { // new window
+        windowStart = now;
+        logged = 0;
+      }
+      if (logged >= maxPerSecond) {
+        this.suppressed++;
+        totalSuppressed++;
+        return;
+      }
+      logged++;
+      suppressed = this.suppressed;
+      this.suppressed = 0;
+      plan = plans.get(sql);
+    }
+    if (plan == null) {
+      plan = s.c.explainQueryPlan(sql);
+      if (plan != null) {
+        synchronized (this) {
+          plans.put(sql, plan);
+        }
+      }
+    }
+    log(new SlowQuery(sql, s.expandedSql(), duration, rows, plan, suppressed));
+  }
+
+  /**
+   * Logs the record as a warning to the <code>org.sqlite.SlowQueryLog</code> {@link Logger}.
+   * Invoked by the thread using the connection (the connection must not be used).
+   */
+  protected void log(SlowQuery query) {
+    LOG.log(Level.WARNING, "{0}", query);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("SlowQueryLog(threshold: %d ms, max: %d/s)", getThreshold(), maxPerSecond);
+  }
+}
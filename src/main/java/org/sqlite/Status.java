@@ -0,0 +1,43 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+/**
+ * Process-wide status parameters (see {@link Conn#getStatus(int, boolean)}).
+ */
+public interface Status {
+  /**
+   * Number of bytes of memory currently checked out by malloc
+   */
+  int SQLITE_STATUS_MEMORY_USED = 0;
+  /**
+   * Number of pages used out of the pagecache memory allocator
+   */
+  int SQLITE_STATUS_PAGECACHE_USED = 1;
+  /**
+   * Number of bytes of page cache allocation which could not be satisfied by the pagecache memory allocator
+   */
+  int SQLITE_STATUS_PAGECACHE_OVERFLOW = 2;
+  /**
+   * Largest memory allocation request handed to malloc (highwater only)
+   */
+  int SQLITE_STATUS_MALLOC_SIZE = 5;
+  /**
+   * Deepest parse stack (highwater only)
+   */
+  int SQLITE_STATUS_PARSER_STACK = 6;
+  /**
+   * Largest memory allocation request handed to the pagecache memory allocator (highwater only)
+   */
+  int SQLITE_STATUS_PAGECACHE_SIZE = 7;
+  /**
+   * Number of separate memory allocations currently checked out
+   */
+  int SQLITE_STATUS_MALLOC_COUNT = 9;
+}
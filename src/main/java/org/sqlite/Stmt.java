@@ -10,13 +10,17 @@ package org.sqlite;
 
 import com.sun.jna.Pointer;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 public class Stmt {
   final Conn c;
   private Pointer pStmt;
+  private final Guard guard;
   private String tail;
+  // SQL text used as key in the connection's statement cache (null when not cacheable)
+  String cacheKey;
   // cached parameter count
   private int paramCount = -1;
   // cached parameters index by name
@@ -24,11 +28,28 @@ public class Stmt {
   // cached column count
   private int columnCount = -1;
   private String[] columnNames;
-
-  Stmt(Conn c, Pointer pStmt, Pointer tail) {
+  // query timeout in milliseconds (0: none)
+  private int queryTimeout;
+  // deadline (System.nanoTime) of the current execution, started by the first step
+  private long deadline;
+  private boolean timedOut;
+  // stepped since the last reset (status counters not yet collected)
+  private boolean running;
+  // current execution: rows returned, start (System.nanoTime, 0 when not timed) and time spent stepping
+  private long rows;
+  private long execStart;
+  private long execNanos;
+  // positioned on a row by the last step
+  private boolean hasRow;
+  // trusted cursor: column types of the current row, read on first access (null when disabled)
+  private int[] rowTypes;
+  private static final int UNKNOWN_TYPE = -1;
+
+  Stmt(Conn c, Pointer pStmt, String tail) {
     this.c = c;
     this.pStmt = pStmt;
-    this.tail = tail.getString(0);
+    this.tail = tail;
+    this.guard = pStmt == null ? null : c.track(this, Guard.STMT, pStmt);
   }
 
   boolean isDumb() {
@@ -38,29 +59,66 @@ public class Stmt {
   public String getSql() {
     return SQLite.sqlite3_sql(pStmt);
   }
+  /**
+   * @return SQL text with bound parameters expanded
+   */
+  public String getExpandedSql() throws StmtException {
+    checkOpen();
+    return expandedSql();
+  }
+  String expandedSql() {
+    final Pointer p = SQLite.sqlite3_expanded_sql(pStmt);
+    if (p == null) {
+      return null;
+    }
+    final String sql = p.getString(0);
+    SQLite.sqlite3_free(p);
+    return sql;
+  }
 
+  /**
+   * @return the SQL following this statement (null for a statement of a {@link Script})
+   */
   public String getTail() {
     return tail;
   }
 
-  @Override
-  protected void finalize() throws Throwable {
-    close();
-    super.finalize();
-  }
   /**
+   * Cacheable statement is reset and returned to the connection's statement cache.
+   * This wrapper is closed anyway: it must not be used anymore.
    * @return result code (No exception is thrown).
    */
   public int close() {
+    return close(false);
+  }
+  /**
+   * @param force true to finalize the statement even if it is cacheable
+   * @return result code (No exception is thrown).
+   */
+  public int close(boolean force) {
     if (pStmt == null) return SQLite.SQLITE_OK;
-    final int res = SQLite.sqlite3_finalize(pStmt);
+    hasRow = false;
+    if (c.isClosed()) { // already finalized by the connection
+      pStmt = null;
+      return SQLite.SQLITE_OK;
+    }
+    endExecution();
+    endDeadline();
+    if (!force && cacheKey != null && tail.length() == 0 && c.release(cacheKey, guard)) {
+      pStmt = null;
+      return SQLite.SQLITE_OK;
+    }
+    final int res = c.untrack(guard);
     //if (res == SQLite.SQLITE_OK) {
       pStmt = null;
     //}
     return res;
   }
   public void closeAndCheck() throws StmtException {
-    final int res = close();
+    closeAndCheck(false);
+  }
+  public void closeAndCheck(boolean force) throws StmtException {
+    final int res = close(force);
     if (res != ErrCodes.SQLITE_OK) {
       throw new StmtException(this, "error while closing statement '%s'", res);
     }
@@ -71,32 +129,159 @@ public class Stmt {
    * @throws StmtException
    */
   public boolean step() throws StmtException {
-    final int res = SQLite.sqlite3_step(pStmt);
+    checkOpen();
+    running = true;
+    final long start = isTimed() ? System.nanoTime() : 0;
+    final int res = queryTimeout > 0 ? stepWithDeadline() : SQLite.sqlite3_step(pStmt);
+    c.endBusy();
+    if (start != 0) {
+      stepped(start);
+    }
     if (res == SQLite.SQLITE_ROW) {
+      rows++;
+      hasRow = true;
+      if (rowTypes != null) {
+        Arrays.fill(rowTypes, UNKNOWN_TYPE);
+      }
       return true;
     }
+    hasRow = false;
     SQLite.sqlite3_reset(pStmt);
+    endDeadline();
+    endExecution();
     if (res == SQLite.SQLITE_DONE) {
       return false;
     }
+    if (queryTimeout > 0 && timedOut) {
+      throw new StmtException(this, String.format("query timeout (%d ms) expired while stepping '%s'", queryTimeout, getSql()), res);
+    }
     throw new StmtException(this, String.format("error while stepping '%s'", getSql()), res);
   }
   public void exec() throws StmtException {
-    final int res = SQLite.sqlite3_step(pStmt);
+    checkOpen();
+    running = true;
+    final long start = isTimed() ? System.nanoTime() : 0;
+    final int res = queryTimeout > 0 ? stepWithDeadline() : SQLite.sqlite3_step(pStmt);
+    c.endBusy();
+    if (start != 0) {
+      stepped(start);
+    }
+    hasRow = false;
     SQLite.sqlite3_reset(pStmt);
+    endDeadline();
+    endExecution();
     if (res == SQLite.SQLITE_ROW) {
       throw new StmtException(this, String.format("only non SELECT expected but got '%s'", getSql()), res);
     }
+    if (queryTimeout > 0 && timedOut) {
+      throw new StmtException(this, String.format("query timeout (%d ms) expired while executing '%s'", queryTimeout, getSql()), res);
+    }
     if (res != SQLite.SQLITE_DONE) {
       throw new StmtException(this, String.format("error while executing '%s'", getSql()), res);
     }
   }
+  // The connection's progress handler interrupts the statement once the deadline has passed.
+  private int stepWithDeadline() {
+    if (deadline == 0) {
+      deadline = System.nanoTime() + queryTimeout * 1000000L;
+    }
+    c.setDeadline(deadline);
+    final int res;
+    try {
+      res = SQLite.sqlite3_step(pStmt);
+    } finally {
+      c.setDeadline(0);
+    }
+    timedOut = res == ErrCodes.SQLITE_INTERRUPT && System.nanoTime() - deadline >= 0;
+    return res;
+  }
+
+  // The connection's progress handler is only installed while an execution with a deadline is in progress.
+  private void endDeadline() {
+    if (deadline != 0) {
+      deadline = 0;
+      c.removeDeadlineHandler();
+    }
+  }
+
+  /**
+   * The deadline starts with the first step and covers all the steps until the statement is reset.
+   * @param ms query timeout in milliseconds (0: no timeout)
+   */
+  public void setQueryTimeout(int ms) {
+    this.queryTimeout = ms;
+  }
+  /**
+   * @return query timeout in milliseconds (0: no timeout)
+   */
+  public int getQueryTimeout() {
+    return queryTimeout;
+  }
+  /**
+   * @return true if the last step has been interrupted because the query timeout expired
+   */
+  public boolean isTimedOut() {
+    return timedOut;
+  }
 
   public void reset() throws StmtException {
     checkOpen();
+    endDeadline();
+    hasRow = false;
+    endExecution();
     check(SQLite.sqlite3_reset(pStmt), "Error while resetting '%s'");
   }
 
+  /**
+   * @param op    org.sqlite.StmtStatus.*
+   * @param reset true to reset the counter
+   * @return counter value
+   */
+  public int getStatus(int op, boolean reset) throws StmtException {
+    checkOpen();
+    return status(op, reset);
+  }
+  int status(int op, boolean reset) {
+    return SQLite.sqlite3_stmt_status(pStmt, op, reset);
+  }
+  // Stepping is timed only when events or the slow query log are enabled.
+  private boolean isTimed() {
+    return Events.listener != null || c.getSlowQueryLog() != null;
+  }
+  private void stepped(long start) {
+    if (execStart == 0) {
+      execStart = start;
+    }
+    execNanos += System.nanoTime() - start;
+  }
+  // Status counters of the execution that just ended are added to the connection's stats (if enabled)
+  // and the execution event is fired (if enabled).
+  private void endExecution() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    final StmtStats stats = c.getStmtStats();
+    final EventListener l = execStart == 0 ? null : Events.listener;
+    final SlowQueryLog slowQueryLog = execStart == 0 ? null : c.getSlowQueryLog();
+    final boolean slow = slowQueryLog != null && slowQueryLog.isSlow(execNanos);
+    if (stats != null || l != null || slow) {
+      final String sql = cacheKey == null ? getSql() : cacheKey;
+      if (stats != null) {
+        stats.record(sql, this);
+      }
+      if (l != null) {
+        l.execute(sql, execStart, execNanos, rows);
+      }
+      if (slow) {
+        slowQueryLog.record(this, sql, execNanos, rows);
+      }
+    }
+    rows = 0;
+    execStart = 0;
+    execNanos = 0;
+  }
+
   public boolean isBusy() throws StmtException {
     checkOpen();
     return SQLite.sqlite3_stmt_busy(pStmt);
@@ -257,6 +442,138 @@ public class Stmt {
     return SQLite.sqlite3_column_text(pStmt, iCol);
   }
 
+  /**
+   * Trusted cursor: the type of a column is read once per row, on first access by {@link #columnType(int)}
+   * (columns not read cost nothing), so that type checks see the type before any conversion
+   * and the unchecked getters ({@link #columnInt(int)}, ...) skip the checks done by the native side.
+   * Checked getters must not be mixed with the trusted ones on the same row (they may convert the value).
+   * @param trusted false to stop caching column types
+   * @throws StmtException if the statement is closed
+   */
+  public void setTrusted(boolean trusted) throws StmtException {
+    if (!trusted) {
+      rowTypes = null;
+    } else if (rowTypes == null) {
+      rowTypes = new int[getColumnCount()];
+      Arrays.fill(rowTypes, UNKNOWN_TYPE);
+    }
+  }
+  public boolean isTrusted() {
+    return rowTypes != null;
+  }
+
+  /**
+   * Trusted cursor only: the statement, the current row and the column index are checked without native call
+   * (one native call for the first access to a column of the current row).
+   * @param iCol The leftmost column is number 0.
+   * @return org.sqlite.ColTypes.* of the current row before any conversion
+   * @throws StmtException if the statement is closed, not trusted, not positioned on a row or if the index is invalid
+   */
+  public int columnType(int iCol) throws StmtException {
+    if (rowTypes == null || !hasRow || c.isClosed()) {
+      throw new StmtException(this, "no current row (or statement not trusted)", ErrCodes.WRAPPER_SPECIFIC);
+    }
+    if (iCol < 0 || iCol >= rowTypes.length) {
+      throw new StmtException(this, String.format("column index (%d) >= column count (%d)", iCol, rowTypes.length), ErrCodes.WRAPPER_SPECIFIC);
+    }
+    int type = rowTypes[iCol];
+    if (type == UNKNOWN_TYPE) {
+      type = SQLite.sqlite3_column_type(pStmt, iCol);
+      rowTypes[iCol] = type;
+    }
+    return type;
+  }
+  /**
+   * Unchecked: {@link #columnType(int)} must be called first for the current row and the same column.
+   */
+  public int columnInt(int iCol) {
+    return SQLite.sqlite3_column_int(pStmt, iCol);
+  }
+  /**
+   * Unchecked: {@link #columnType(int)} must be called first for the current row and the same column.
+   */
+  public long columnLong(int iCol) {
+    return SQLite.sqlite3_column_int64(pStmt, iCol);
+  }
+  /**
+   * Unchecked: {@link #columnType(int)} must be called first for the current row and the same column.
+   */
+  public double columnDouble(int iCol) {
+    return SQLite.sqlite3_column_double(pStmt, iCol);
+  }
+  /**
+   * Unchecked: {@link #columnType(int)} must be called first for the current row and the same column.
+   */
+  public String columnText(int iCol) {
+    return SQLite.sqlite3_column_text(pStmt, iCol);
+  }
+  /**
+   * Unchecked: {@link #columnType(int)} must be called first for the current row and the same column.
+   * Two native calls: the content and its length.
+   */
+  public byte[] columnBlob(int iCol) {
+    final Pointer p = SQLite.sqlite3_column_blob(pStmt, iCol);
+    if (p == null) {
+      return null;
+    }
+    return p.getByteArray(0, SQLite.sqlite3_column_bytes(pStmt, iCol));
+  }
+
+  /**
+   * Lazy iteration: the statement is reset once the iteration is over or when the iterator is closed.
+   */
+  public <T> RowIterator<T> iterate(RowMapper<T> mapper) throws StmtException {
+    checkOpen();
+    return new RowIterator<T>(this, mapper, false);
+  }
+
+  /**
+   * Columnar bulk fetch: steps up to <code>batch.getCapacity()</code> rows and copies the bound columns.
+   * @return number of rows fetched (less than the capacity once the statement is done and reset:
+   * fetching again re-executes it)
+   * @throws StmtException if the batch does not match the statement or if a step fails
+   */
+  public int fetch(ColumnBatch batch) throws StmtException {
+    checkOpen();
+    if (batch.getColumnCount() != getColumnCount()) {
+      throw new StmtException(this, String.format("batch column count (%d) != column count (%d)", batch.getColumnCount(), getColumnCount()), ErrCodes.WRAPPER_SPECIFIC);
+    }
+    batch.clear();
+    while (!batch.isFull() && step()) {
+      batch.add(pStmt);
+    }
+    return batch.size();
+  }
+
+  /**
+   * Binds the parameters of one row of the batch and executes the statement.
+   * @return number of rows modified
+   */
+  public int exec(BindBatch batch, int row) throws SQLiteException {
+    batch.bind(this, row);
+    exec();
+    return c.getChanges();
+  }
+  /**
+   * Columnar batch: the statement is bound and executed for each of the first <code>rows</code> rows.
+   * Stops at the first failure.
+   * @return total number of rows modified
+   */
+  public long executeMany(BindBatch batch, int rows) throws SQLiteException {
+    checkOpen();
+    if (batch.getParamCount() != getBindParameterCount()) {
+      throw new StmtException(this, String.format("batch parameter count (%d) != parameter count (%d)", batch.getParamCount(), getBindParameterCount()), ErrCodes.WRAPPER_SPECIFIC);
+    }
+    if (rows > batch.getRowCount()) {
+      throw new StmtException(this, String.format("row count (%d) > batch row count (%d)", rows, batch.getRowCount()), ErrCodes.WRAPPER_SPECIFIC);
+    }
+    long changes = 0;
+    for (int row = 0; row < rows; row++) {
+      changes += exec(batch, row);
+    }
+    return changes;
+  }
+
   public void bind(Object... params) throws StmtException {
     reset();
     if (params.length != getBindParameterCount()) {
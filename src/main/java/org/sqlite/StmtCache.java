@@ -0,0 +1,122 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import com.sun.jna.Pointer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * LRU cache of idle prepared statements keyed by SQL text (one per connection).
+ * Only the native statement is cached: it is removed from the cache when it is checked out by {@link Conn#prepare(String)}
+ * (wrapped in a new {@link Stmt}) and put back when its wrapper is closed by its owner ({@link Stmt#close()}).
+ */
+public class StmtCache {
+  public static final int DEFAULT_MAX_SIZE = 10;
+
+  // access-ordered: the eldest entry is the least recently used
+  private final LinkedHashMap<String, Pointer> stmts = new LinkedHashMap<String, Pointer>(16, 0.75f, true);
+  private int maxSize;
+
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  StmtCache(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * @param sql query
+   * @return an idle native statement with its bindings cleared or null (miss).
+   */
+  synchronized Pointer find(String sql) {
+    if (maxSize <= 0) {
+      return null;
+    }
+    final Pointer pStmt = stmts.remove(sql);
+    if (pStmt == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    SQLite.sqlite3_clear_bindings(pStmt);
+    return pStmt;
+  }
+
+  /**
+   * @param pStmt native statement already reset (owned by the cache from now on)
+   */
+  synchronized void release(String sql, Pointer pStmt) {
+    if (maxSize <= 0) {
+      SQLite.sqlite3_finalize(pStmt);
+      return;
+    }
+    final Pointer previous = stmts.put(sql, pStmt);
+    if (previous != null) { // same SQL checked out twice
+      SQLite.sqlite3_finalize(previous);
+      evictions++;
+    }
+    evict();
+  }
+
+  /**
+   * Finalize all idle statements.
+   */
+  synchronized void flush() {
+    for (Pointer pStmt : stmts.values()) {
+      SQLite.sqlite3_finalize(pStmt);
+    }
+    stmts.clear();
+  }
+
+  private void evict() {
+    final Iterator<Pointer> it = stmts.values().iterator();
+    while (stmts.size() > maxSize && it.hasNext()) {
+      final Pointer pStmt = it.next();
+      it.remove();
+      SQLite.sqlite3_finalize(pStmt);
+      evictions++;
+    }
+  }
+
+  /**
+   * @param maxSize 0 to disable the cache (idle statements are finalized).
+   */
+  public synchronized void setMaxSize(int maxSize) {
+    this.maxSize = maxSize;
+    evict();
+  }
+  public synchronized int getMaxSize() {
+    return maxSize;
+  }
+  /**
+   * @return number of idle statements
+   */
+  public synchronized int size() {
+    return stmts.size();
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+  public synchronized long getMisses() {
+    return misses;
+  }
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("StmtCache(size: %d/%d, hits: %d, misses: %d, evictions: %d)",
+        stmts.size(), maxSize, hits, misses, evictions);
+  }
+}
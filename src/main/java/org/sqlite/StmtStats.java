@@ -0,0 +1,206 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statement status counters aggregated by SQL text (see {@link Conn#setStmtStats(StmtStats)}).
+ * Counters are read (and reset) each time an execution ends: when the statement is done, reset or closed.
+ * An instance may be shared by many connections.
+ * The number of distinct SQL texts is bounded: the least recently executed entry is evicted
+ * (SQL with inlined literals should be parameterized to be aggregated).
+ */
+public class StmtStats {
+  public static final int DEFAULT_MAX_SIZE = 1000;
+
+  // sqlite3_stmt_status operations accumulated (MEMUSED is a gauge: the maximum is kept)
+  private static final int[] OPS = {StmtStatus.SQLITE_STMTSTATUS_FULLSCAN_STEP, StmtStatus.SQLITE_STMTSTATUS_SORT,
+      StmtStatus.SQLITE_STMTSTATUS_AUTOINDEX, StmtStatus.SQLITE_STMTSTATUS_VM_STEP,
+      StmtStatus.SQLITE_STMTSTATUS_REPREPARE, StmtStatus.SQLITE_STMTSTATUS_RUN};
+
+  public static class Entry {
+    private final String sql;
+    private long executions;
+    private final long[] counters = new long[OPS.length];
+    private long memUsed;
+
+    private Entry(String sql) {
+      this.sql = sql;
+    }
+    private Entry(Entry e) {
+      this(e.sql);
+      executions = e.executions;
+      System.arraycopy(e.counters, 0, counters, 0, counters.length);
+      memUsed = e.memUsed;
+    }
+
+    public String getSql() {
+      return sql;
+    }
+    public long getExecutions() {
+      return executions;
+    }
+    /**
+     * @param op org.sqlite.StmtStatus.*
+     * @return sum over all executions (or maximum for SQLITE_STMTSTATUS_MEMUSED)
+     */
+    public long get(int op) {
+      if (op == StmtStatus.SQLITE_STMTSTATUS_MEMUSED) {
+        return memUsed;
+      }
+      for (int i = 0; i < OPS.length; i++) {
+        if (OPS[i] == op) {
+          return counters[i];
+        }
+      }
+      throw new IllegalArgumentException(String.format("unknown statement status: %d", op));
+    }
+    public long getFullscanSteps() {
+      return get(StmtStatus.SQLITE_STMTSTATUS_FULLSCAN_STEP);
+    }
+    public long getSorts() {
+      return get(StmtStatus.SQLITE_STMTSTATUS_SORT);
+    }
+    public long getAutoindexes() {
+      return get(StmtStatus.SQLITE_STMTSTATUS_AUTOINDEX);
+    }
+    public long getVmSteps() {
+      return get(StmtStatus.SQLITE_STMTSTATUS_VM_STEP);
+    }
+    public long getReprepares() {
+      return get(StmtStatus.SQLITE_STMTSTATUS_REPREPARE);
+    }
+    public long getRuns() {
+      return get(StmtStatus.SQLITE_STMTSTATUS_RUN);
+    }
+    public long getMemUsed() {
+      return memUsed;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s: executions=%d, fullscan_step=%d, sort=%d, autoindex=%d, vm_step=%d, reprepare=%d, run=%d, memused=%d",
+          sql, executions, counters[0], counters[1], counters[2], counters[3], counters[4], counters[5], memUsed);
+    }
+  }
+
+  // access-ordered: the eldest entry is the least recently executed
+  private final Map<String, Entry> entries;
+  private final int maxSize;
+  private long evictions;
+
+  public StmtStats() {
+    this(DEFAULT_MAX_SIZE);
+  }
+  /**
+   * @param maxSize maximum number of distinct SQL texts
+   */
+  public StmtStats(int maxSize) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException(String.format("invalid max size: %d", maxSize));
+    }
+    this.maxSize = maxSize;
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        if (size() > StmtStats.this.maxSize) {
+          evictions++;
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  // Called when an execution of the statement ends (no exception is thrown).
+  void record(String sql, Stmt s) {
+    final long[] deltas = new long[OPS.length];
+    for (int i = 0; i < OPS.length; i++) {
+      deltas[i] = s.status(OPS[i], true);
+    }
+    final long memUsed = s.status(StmtStatus.SQLITE_STMTSTATUS_MEMUSED, false);
+    synchronized (this) {
+      Entry e = entries.get(sql);
+      if (e == null) {
+        e = new Entry(sql);
+        entries.put(sql, e);
+      }
+      e.executions++;
+      for (int i = 0; i < OPS.length; i++) {
+        e.counters[i] += deltas[i];
+      }
+      e.memUsed = Math.max(e.memUsed, memUsed);
+    }
+  }
+
+  /**
+   * @param sql SQL text
+   * @return a snapshot or null
+   */
+  public synchronized Entry get(String sql) {
+    final Entry e = entries.get(sql);
+    return e == null ? null : new Entry(e);
+  }
+  /**
+   * @return a snapshot of all entries
+   */
+  public synchronized List<Entry> getEntries() {
+    final List<Entry> snapshot = new ArrayList<Entry>(entries.size());
+    for (Entry e : entries.values()) {
+      snapshot.add(new Entry(e));
+    }
+    return snapshot;
+  }
+  /**
+   * @param op org.sqlite.StmtStatus.*
+   * @return a snapshot of the entries whose counter is not zero, sorted by decreasing value
+   */
+  public List<Entry> getTop(final int op) {
+    final List<Entry> top = new ArrayList<Entry>();
+    for (Entry e : getEntries()) {
+      if (e.get(op) != 0) {
+        top.add(e);
+      }
+    }
+    Collections.sort(top, new Comparator<Entry>() {
+      @Override
+      public int compare(Entry e1, Entry e2) {
+        final long v1 = e1.get(op), v2 = e2.get(op);
+        return v1 < v2 ? 1 : (v1 == v2 ? 0 : -1);
+      }
+    });
+    return top;
+  }
+  public synchronized int size() {
+    return entries.size();
+  }
+  public int getMaxSize() {
+    return maxSize;
+  }
+  /**
+   * @return number of entries evicted to respect the max size
+   */
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+  public synchronized void reset() {
+    entries.clear();
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("StmtStats(%d/%d statements, evictions: %d)", entries.size(), maxSize, evictions);
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+/**
+ * Status counters of a prepared statement (see {@link Stmt#getStatus(int, boolean)}).
+ */
+public interface StmtStatus {
+  /**
+   * Number of times that SQLite has stepped forward in a table as part of a full table scan
+   */
+  int SQLITE_STMTSTATUS_FULLSCAN_STEP = 1;
+  /**
+   * Number of sort operations
+   */
+  int SQLITE_STMTSTATUS_SORT = 2;
+  /**
+   * Number of rows inserted into transient indices that were created automatically
+   */
+  int SQLITE_STMTSTATUS_AUTOINDEX = 3;
+  /**
+   * Number of virtual machine operations executed
+   */
+  int SQLITE_STMTSTATUS_VM_STEP = 4;
+  /**
+   * Number of times that the prepare statement has been automatically regenerated
+   */
+  int SQLITE_STMTSTATUS_REPREPARE = 5;
+  /**
+   * Number of times that the prepared statement has been run
+   */
+  int SQLITE_STMTSTATUS_RUN = 6;
+  /**
+   * Approximate number of bytes of heap memory used to store the prepared statement (not a counter)
+   */
+  int SQLITE_STMTSTATUS_MEMUSED = 99;
+}
@@ -0,0 +1,39 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+/**
+ * Receives the events traced by SQLite itself (see {@link Conn#setTraceListener(TraceListener, int)}),
+ * including the statements run by triggers.
+ * Methods are invoked by the thread using the connection and must not use it.
+ */
+public interface TraceListener {
+  /**
+   * SQLITE_TRACE_STMT: a statement starts running (first step).
+   * @param stmt native statement handle (identifies the statement until it is finalized)
+   * @param sql  unexpanded SQL text or a comment ("-- TRIGGER name") when a trigger is entered
+   */
+  void statement(long stmt, String sql);
+  /**
+   * SQLITE_TRACE_PROFILE: a statement has finished.
+   * @param stmt     native statement handle
+   * @param sql      unexpanded SQL text
+   * @param duration estimated running time in nanoseconds
+   */
+  void profile(long stmt, String sql, long duration);
+  /**
+   * SQLITE_TRACE_ROW: a statement returns a row.
+   * @param stmt native statement handle
+   */
+  void row(long stmt);
+  /**
+   * SQLITE_TRACE_CLOSE: the connection is closing.
+   */
+  void close();
+}
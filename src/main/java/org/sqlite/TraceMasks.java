@@ -0,0 +1,19 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+/**
+ * Events traced by {@link TraceListener}.
+ */
+public interface TraceMasks {
+  int SQLITE_TRACE_STMT = 0x01;
+  int SQLITE_TRACE_PROFILE = 0x02;
+  int SQLITE_TRACE_ROW = 0x04;
+  int SQLITE_TRACE_CLOSE = 0x08;
+}
@@ -0,0 +1,23 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+/**
+ * Wraps a {@link SQLiteException} where a checked exception cannot be thrown (e.g. {@link java.util.Iterator}).
+ */
+public class UncheckedSQLiteException extends RuntimeException {
+  public UncheckedSQLiteException(SQLiteException cause) {
+    super(cause.getMessage(), cause);
+  }
+
+  @Override
+  public SQLiteException getCause() {
+    return (SQLiteException) super.getCause();
+  }
+}
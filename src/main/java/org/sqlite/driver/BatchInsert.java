@@ -0,0 +1,171 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite.driver;
+
+/**
+ * Multi-row form of a single-row <code>INSERT ... VALUES (?, ...)</code> (see {@link PrepStmt#setRewriteBatchedInserts(boolean)}):
+ * <code>n</code> batched rows are executed as one <code>INSERT ... VALUES (?, ...), (?, ...), ...</code>.
+ * Only anonymous parameters are supported (a numbered or named parameter would be shared by all the rows).
+ * Statements with a trailing clause (upsert, RETURNING) or a common table expression are not rewritten.
+ * Neither are <code>INSERT OR FAIL</code> statements: the rows inserted before the failure would be kept
+ * and inserted again when the rows are retried one by one.
+ */
+final class BatchInsert {
+  private final String head; // up to VALUES
+  private final String tuple;
+  private final int paramCount;
+  private final boolean rollback; // INSERT OR ROLLBACK
+  // last shape generated
+  private int rows;
+  private String sql;
+
+  private BatchInsert(String head, String tuple, int paramCount, boolean rollback) {
+    this.head = head;
+    this.tuple = tuple;
+    this.paramCount = paramCount;
+    this.rollback = rollback;
+  }
+
+  int getParamCount() {
+    return paramCount;
+  }
+  /**
+   * @return true for <code>INSERT OR ROLLBACK</code> (the transaction is rolled back by a failed row)
+   */
+  boolean isRollback() {
+    return rollback;
+  }
+
+  /**
+   * @return SQL inserting <code>rows</code> rows
+   */
+  String sql(int rows) {
+    if (rows != this.rows) {
+      final StringBuilder sb = new StringBuilder(head.length() + (tuple.length() + 1) * rows);
+      sb.append(head).append(tuple);
+      for (int i = 1; i < rows; i++) {
+        sb.append(',').append(tuple);
+      }
+      this.sql = sb.toString();
+      this.rows = rows;
+    }
+    return sql;
+  }
+
+  /**
+   * @return null if <code>sql</code> cannot be rewritten
+   */
+  static BatchInsert parse(String sql) {
+    final int length = sql.length();
+    String first = null, previous = null; // previous: previous token if it is a word
+    boolean rollback = false;
+    boolean afterValues = false; // previous token is the VALUES keyword
+    int depth = 0, tupleStart = -1, tupleEnd = -1, params = 0;
+    int i = 0;
+    while (i < length) {
+      final char ch = sql.charAt(i);
+      if (Character.isWhitespace(ch) || ch == ';' && depth == 0 && tupleEnd >= 0) {
+        i++;
+        continue;
+      }
+      if (ch == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+        final int eol = sql.indexOf('\n', i);
+        i = eol < 0 ? length : eol + 1;
+        continue;
+      }
+      if (ch == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+        final int end = sql.indexOf("*/", i + 2);
+        i = end < 0 ? length : end + 2;
+        continue;
+      }
+      if (tupleEnd >= 0 || first == null && !Character.isLetter(ch)) {
+        return null; // trailing clause or not an INSERT
+      }
+      if (ch == '\'' || ch == '"' || ch == '`' || ch == '[') {
+        i = skipQuoted(sql, i, ch == '[' ? ']' : ch);
+        if (i < 0) {
+          return null;
+        }
+        afterValues = false;
+        previous = null;
+        continue;
+      }
+      if (Character.isLetterOrDigit(ch) || ch == '_') {
+        final int start = i;
+        while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_')) {
+          i++;
+        }
+        final String word = sql.substring(start, i);
+        if (first == null) {
+          first = word;
+          if (!"INSERT".equalsIgnoreCase(word) && !"REPLACE".equalsIgnoreCase(word)) {
+            return null;
+          }
+        }
+        if (tupleStart < 0 && "OR".equalsIgnoreCase(previous)) { // conflict clause
+          if ("FAIL".equalsIgnoreCase(word)) {
+            return null;
+          }
+          rollback = "ROLLBACK".equalsIgnoreCase(word);
+        }
+        afterValues = depth == 0 && "VALUES".equalsIgnoreCase(word);
+        previous = word;
+        continue;
+      }
+      switch (ch) {
+        case '?':
+          if (i + 1 < length && Character.isDigit(sql.charAt(i + 1)) || tupleStart < 0) {
+            return null; // numbered parameter
+          }
+          params++;
+          break;
+        case ':':
+        case '@':
+        case '$':
+          return null; // named parameter
+        case '(':
+          if (afterValues) {
+            tupleStart = i;
+          }
+          depth++;
+          break;
+        case ')':
+          depth--;
+          if (depth == 0 && tupleStart >= 0) {
+            tupleEnd = i + 1;
+          }
+          break;
+      }
+      afterValues = false;
+      previous = null;
+      i++;
+    }
+    if (tupleEnd < 0 || params == 0) {
+      return null;
+    }
+    return new BatchInsert(sql.substring(0, tupleStart), sql.substring(tupleStart, tupleEnd), params, rollback);
+  }
+
+  // @return the index following the closing quote or -1
+  private static int skipQuoted(String sql, int i, char quote) {
+    final int length = sql.length();
+    i++;
+    while (i < length) {
+      if (sql.charAt(i) == quote) {
+        if (quote != ']' && i + 1 < length && sql.charAt(i + 1) == quote) { // escaped
+          i += 2;
+          continue;
+        }
+        return i + 1;
+      }
+      i++;
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite.driver;
+
+import org.sqlite.ConnException;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Transaction wrapping a batch executed in auto-commit mode (see {@link Stmt#setBatchCommitSize(int)}):
+ * committed every <code>commitSize</code> rows instead of once per row.
+ * A failed row is rolled back alone by SQLite (statement journal), the others are kept.
+ * When SQLite rolls back the whole transaction (or the commit fails), all the rows of the chunk are reported as failed.
+ */
+final class BatchTx {
+  private final org.sqlite.Conn c;
+  private final int commitSize;
+  private boolean active;
+  // first row of the current chunk
+  private int start;
+
+  BatchTx(org.sqlite.Conn c, int commitSize) throws SQLException {
+    this.c = c;
+    this.commitSize = commitSize;
+    if (commitSize > 0 && c.getAutoCommit()) {
+      c.fastExec("BEGIN");
+      active = true;
+    }
+  }
+
+  /**
+   * Must be called after each row or chunk of rows (even when it failed).
+   * @param i last row executed
+   * @throws BatchUpdateException if the chunk cannot be committed
+   */
+  void executed(int i, int[] changes) throws SQLException {
+    if (!active || restarted(i, changes)) {
+      return;
+    }
+    if (i + 1 - start >= commitSize) {
+      commit(i, changes);
+      c.fastExec("BEGIN");
+    }
+  }
+
+  /**
+   * Begins a new transaction if the current one has been rolled back by SQLite:
+   * rows up to <code>i</code> are reported as failed.
+   * @return true if restarted
+   */
+  boolean restarted(int i, int[] changes) throws SQLException {
+    if (!active || !c.getAutoCommit()) {
+      return false;
+    }
+    failed(i, changes);
+    c.fastExec("BEGIN");
+    return true;
+  }
+
+  /**
+   * @return true if the batch is executed in this transaction
+   */
+  boolean isActive() {
+    return active;
+  }
+
+  /**
+   * Rolls back the pending chunk when the batch cannot go on: its rows are reported as failed.
+   * @param i last row executed
+   */
+  BatchUpdateException aborted(int i, int[] changes, SQLException cause) {
+    if (active) {
+      failed(i, changes);
+      abort();
+    }
+    return new BatchUpdateException("batch failed", Arrays.copyOf(changes, i + 1), cause);
+  }
+
+  /**
+   * Commits the last chunk.
+   */
+  void end(int[] changes) throws SQLException {
+    if (!active) {
+      return;
+    }
+    final int last = changes.length - 1;
+    if (c.getAutoCommit()) {
+      failed(last, changes);
+    } else if (last >= start) {
+      commit(last, changes);
+    } else {
+      c.fastExec("COMMIT"); // empty
+    }
+    active = false;
+  }
+
+  /**
+   * Rolls back the pending chunk (no-op after {@link #end(int[])}).
+   */
+  void abort() {
+    if (!active) {
+      return;
+    }
+    active = false;
+    if (!c.getAutoCommit()) {
+      try {
+        c.fastExec("ROLLBACK");
+      } catch (ConnException ignored) {
+        // the original error is reported
+      }
+    }
+  }
+
+  private void commit(int i, int[] changes) throws SQLException {
+    try {
+      c.fastExec("COMMIT");
+    } catch (ConnException e) {
+      abort();
+      failed(i, changes);
+      throw new BatchUpdateException("batch commit failed", Arrays.copyOf(changes, i + 1), e);
+    }
+    start = i + 1;
+  }
+
+  private void failed(int i, int[] changes) {
+    Arrays.fill(changes, start, i + 1, Statement.EXECUTE_FAILED);
+    start = i + 1;
+  }
+}
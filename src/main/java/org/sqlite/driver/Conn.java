@@ -8,12 +8,24 @@
  */
 package org.sqlite.driver;
 
+import org.sqlite.EventListener;
+import org.sqlite.Events;
+
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Conn implements Connection {
+  // ms between two interrupts of the in-flight statements by abort
+  private static final long INTERRUPT_PERIOD = 10;
+
   private org.sqlite.Conn c;
 
   private DbMeta meta = null;
@@ -21,10 +33,30 @@ public class Conn implements Connection {
 
   private Properties clientInfo = null;
   private int savepointId = 0;
+  // not null for a logical connection (the physical one is not closed by close)
+  private final PooledConn pooled;
+  // statements opened through a logical connection (closed when it is returned to the pool)
+  private final Set<Stmt> stmts;
+
+  // number of statements being stepped (see beginStep/endStep), notified when it drops to 0 after abort
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private volatile boolean aborted;
+  private volatile int networkTimeout; // ms
+  // PRAGMA query_only set by setReadOnly (reset before the physical connection returns to the pool)
+  private boolean queryOnly;
+  // default of the statements created from now on (see Stmt.setBatchCommitSize)
+  private int batchCommitSize;
+  // default of the prepared statements created from now on (see PrepStmt.setRewriteBatchedInserts)
+  private boolean rewriteBatchedInserts;
 
   public Conn(org.sqlite.Conn c, Properties info) {
+    this(c, info, null);
+  }
+  Conn(org.sqlite.Conn c, Properties info, PooledConn pooled) {
     this.c = c;
     this.clientInfo = info;
+    this.pooled = pooled;
+    this.stmts = pooled == null ? null : new HashSet<Stmt>();
   }
 
   org.sqlite.Conn getConn() throws SQLException {
@@ -32,13 +64,61 @@ public class Conn implements Connection {
     return c;
   }
   private void checkOpen() throws SQLException {
-    if (c == null) {
+    if (aborted) {
+      throw new SQLException("Connection aborted");
+    } else if (c == null) {
       throw new SQLException("Connection closed");
     } else {
       c.checkOpen();
     }
   }
 
+  /**
+   * @param rows in auto-commit mode, batches of the statements created from now on are run in transactions
+   *             committed every <code>rows</code> rows (0: one transaction per row)
+   */
+  public void setBatchCommitSize(int rows) throws SQLException {
+    if (rows < 0) throw Util.error("batch commit size must be >= 0");
+    checkOpen();
+    this.batchCommitSize = rows;
+  }
+  public int getBatchCommitSize() {
+    return batchCommitSize;
+  }
+  /**
+   * @param rewrite true to execute batched single-row inserts of the prepared statements created from now on
+   *                as multi-row inserts
+   */
+  public void setRewriteBatchedInserts(boolean rewrite) throws SQLException {
+    checkOpen();
+    this.rewriteBatchedInserts = rewrite;
+  }
+  public boolean isRewriteBatchedInserts() {
+    return rewriteBatchedInserts;
+  }
+
+  // Called by Stmt when its native statement is prepared
+  void opened(Stmt s) {
+    if (stmts != null) {
+      synchronized (stmts) {
+        stmts.add(s);
+      }
+    }
+  }
+  // Called by Stmt when closed
+  void closed(Stmt s) {
+    if (stmts != null) {
+      synchronized (stmts) {
+        stmts.remove(s);
+      }
+    }
+  }
+
+  // thread owning the connection while a result set is prefetched
+  ExecutorService getExecutor() throws SQLException {
+    return getConn().getExecutor();
+  }
+
   ResultSet getGeneratedKeys() throws SQLException {
     if (getGeneratedKeys == null) {
       getGeneratedKeys = prepareStatement("select last_insert_rowid()");
@@ -71,7 +151,7 @@ public class Conn implements Connection {
   @Override
   public void setAutoCommit(boolean autoCommit) throws SQLException {
     if (getAutoCommit() == autoCommit) return;
-    getConn().exec(autoCommit ? "COMMIT" : "BEGIN");
+    transaction(autoCommit ? "COMMIT" : "BEGIN", autoCommit ? "COMMIT" : "BEGIN");
   }
   @Override
   public boolean getAutoCommit() throws SQLException {
@@ -80,41 +160,81 @@ public class Conn implements Connection {
   @Override
   public void commit() throws SQLException {
     if (getAutoCommit()) throw Util.error("database in auto-commit mode");
-    getConn().exec("COMMIT; BEGIN");
+    transaction("COMMIT", "COMMIT; BEGIN");
   }
   @Override
   public void rollback() throws SQLException {
     if (getAutoCommit()) throw Util.error("database in auto-commit mode");
-    getConn().exec("ROLLBACK; BEGIN");
+    transaction("ROLLBACK", "ROLLBACK; BEGIN");
   }
   @Override
   public void close() throws SQLException {
     if (c != null) {
+      if (pooled != null) {
+        closeLogical();
+        return;
+      }
       if (getGeneratedKeys != null) getGeneratedKeys.close();
       c.closeAndCheck();
       if (clientInfo != null) clientInfo.clear();
       c = null;
     }
   }
+  private void closeLogical() throws SQLException {
+    SQLException error = null;
+    final List<Stmt> open;
+    synchronized (stmts) {
+      open = new ArrayList<Stmt>(stmts);
+    }
+    for (Stmt s : open) { // statements being stepped must not keep their read transaction
+      try {
+        s.close();
+      } catch (SQLException e) {
+        if (error == null) {
+          error = e;
+        }
+      }
+    }
+    try {
+      if (!c.getAutoCommit()) { // pending transaction must not leak to the next user
+        c.exec("ROLLBACK");
+      }
+      if (queryOnly) {
+        c.exec("PRAGMA query_only=0");
+      }
+    } catch (SQLException e) {
+      if (error == null) {
+        error = e;
+      }
+    }
+    getGeneratedKeys = null;
+    c = null;
+    pooled.closed(this, error);
+  }
   @Override
   public boolean isClosed() throws SQLException {
-    return c == null;
+    return c == null || aborted;
   }
   @Override
   public DatabaseMetaData getMetaData() throws SQLException {
     if (meta == null) meta = new DbMeta(this);
     return meta;
   }
+  /**
+   * Enforced with <code>PRAGMA query_only</code>: the connection is not switched to another one
+   * (see {@link WalDataSource#getReadOnlyConnection()}).
+   */
   @Override
   public void setReadOnly(boolean readOnly) throws SQLException {
-    Util.trace("Connection.setReadOnly");
-    checkOpen();
-    // TODO pragma query_only
+    final org.sqlite.Conn c = getConn();
+    if (readOnly != queryOnly) {
+      c.exec(readOnly ? "PRAGMA query_only=1" : "PRAGMA query_only=0");
+      queryOnly = readOnly;
+    }
   }
   @Override
   public boolean isReadOnly() throws SQLException {
-    checkOpen();
-    return getConn().isReadOnly();
+    return getConn().isReadOnly() || queryOnly;
   }
   @Override
   public void setCatalog(String catalog) throws SQLException {
@@ -199,7 +319,7 @@ public class Conn implements Connection {
         return String.valueOf(id);
       }
     };
-    getConn().exec(mprintf("SAVEPOINT %Q", String.valueOf(id))); // SAVEPOINT 1; fails
+    transaction("SAVEPOINT", mprintf("SAVEPOINT %Q", String.valueOf(id))); // SAVEPOINT 1; fails
     return savepoint;
   }
   @Override
@@ -218,16 +338,31 @@ public class Conn implements Connection {
         return name;
       }
     };
-    getConn().exec(mprintf("SAVEPOINT %Q", name));
+    transaction("SAVEPOINT", mprintf("SAVEPOINT %Q", name));
     return savepoint;
   }
   @Override
   public void rollback(Savepoint savepoint) throws SQLException {
-    getConn().exec(mprintf("ROLLBACK TO SAVEPOINT %Q", savepoint.toString()));
+    transaction("ROLLBACK TO", mprintf("ROLLBACK TO SAVEPOINT %Q", savepoint.toString()));
   }
   @Override
   public void releaseSavepoint(Savepoint savepoint) throws SQLException {
-    getConn().exec(mprintf("RELEASE SAVEPOINT %Q", savepoint.toString()));
+    transaction("RELEASE", mprintf("RELEASE SAVEPOINT %Q", savepoint.toString()));
+  }
+  // Fires a transaction event (if enabled)
+  private void transaction(String command, String sql) throws SQLException {
+    final org.sqlite.Conn c = getConn();
+    final EventListener l = Events.getListener();
+    if (l == null) {
+      c.exec(sql);
+      return;
+    }
+    final long start = System.nanoTime();
+    try {
+      c.exec(sql);
+    } finally {
+      l.transaction(command, start, System.nanoTime() - start);
+    }
   }
   @Override
   public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
@@ -239,7 +374,9 @@ public class Conn implements Connection {
   public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
     checkOpen();
     checkCursor(resultSetType, resultSetConcurrency, resultSetHoldability);
-    return new PrepStmt(this, getConn().prepare(sql));
+    final PrepStmt s = new PrepStmt(this, getConn().prepare(sql));
+    opened(s);
+    return s;
   }
   @Override
   public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
@@ -336,26 +473,102 @@ public class Conn implements Connection {
     checkOpen();
     return null; // TODO
   }
+  /**
+   * Marks the connection closed, interrupts the in-flight statements and closes the native handle
+   * with the given executor once they have completed.
+   */
   @Override
   public void abort(Executor executor) throws SQLException {
-    Util.trace("Connection.abort");
-    // TODO
+    if (executor == null) throw Util.error("executor must not be null");
+    final org.sqlite.Conn conn = c;
+    if (conn == null || aborted) {
+      return;
+    }
+    aborted = true; // no statement can be stepped from now on (see beginStep)
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        synchronized (inFlight) {
+          while (inFlight.get() > 0) {
+            try {
+              conn.interrupt(); // again in case a step had not yet started
+              inFlight.wait(INTERRUPT_PERIOD);
+            } catch (SQLException e) { // closed
+              break;
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              break;
+            }
+          }
+        }
+        final SQLException error = new SQLException("Connection aborted");
+        if (pooled != null) { // the physical connection is discarded by the pool
+          pooled.closed(Conn.this, error);
+        } else {
+          conn.close();
+        }
+      }
+    });
   }
+  /**
+   * The executor is not used: expired steps are interrupted by a timer thread shared by all connections.
+   * @param milliseconds maximum duration of a step (0: no limit)
+   */
   @Override
   public void setNetworkTimeout(Executor executor, int milliseconds) throws SQLException {
-    throw Util.unsupported("Connection.setNetworkTimeout");
+    if (milliseconds < 0) throw Util.error("network timeout must be >= 0");
+    checkOpen();
+    this.networkTimeout = milliseconds;
   }
   @Override
   public int getNetworkTimeout() throws SQLException {
-    throw Util.unsupported("Connection.getNetworkTimeout");
+    checkOpen();
+    return networkTimeout;
   }
+
+  // Called by Stmt before stepping: the statement's timeout is created once and armed for each step
+  TimerWheel.Timeout beginStep(Stmt s) throws SQLException {
+    inFlight.incrementAndGet();
+    if (aborted || c == null) { // checked after incrementing (see abort)
+      decrementInFlight();
+      checkOpen();
+    }
+    if (networkTimeout > 0) {
+      if (s.timeout == null) {
+        s.timeout = TimerWheel.INSTANCE.newTimeout(c);
+      }
+      s.timeout.arm(networkTimeout);
+      return s.timeout;
+    }
+    return null;
+  }
+  // Called by Stmt after stepping
+  void endStep(TimerWheel.Timeout timeout) {
+    if (timeout != null) {
+      timeout.disarm();
+    }
+    decrementInFlight();
+  }
+  private void decrementInFlight() {
+    if (inFlight.decrementAndGet() == 0 && aborted) {
+      synchronized (inFlight) {
+        inFlight.notifyAll();
+      }
+    }
+  }
+  /** Gives access to the underlying {@link org.sqlite.Conn} (e.g. for its {@link org.sqlite.StmtStats}). */
   @Override
   public <T> T unwrap(Class<T> iface) throws SQLException {
+    if (iface.isInstance(this)) {
+      return iface.cast(this);
+    } else if (iface == org.sqlite.Conn.class) {
+      return iface.cast(getConn());
+    }
     throw Util.error("not a wrapper");
   }
   @Override
   public boolean isWrapperFor(Class<?> iface) throws SQLException {
-    return false;
+    return iface.isInstance(this) || iface == org.sqlite.Conn.class;
   }
 
   private static void checkCursor(int resultSetType, int resultSetConcurrency, int resultSetHoldability)
@@ -0,0 +1,501 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite.driver;
+
+import org.sqlite.BusyHandler;
+import org.sqlite.BusyHandlers;
+import org.sqlite.OpenFlags;
+import org.sqlite.SlowQueryLog;
+import org.sqlite.TraceListener;
+import org.sqlite.TraceMasks;
+import org.sqlite.StmtStats;
+
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URLDecoder;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Connection settings parsed from the URL query ("jdbc:sqlite:test.db?journal_mode=WAL&synchronous=NORMAL")
+ * and from the connection properties.
+ * Precedence (lowest to highest): profile, URL query, properties.
+ * Pragmas are applied at open time in a single native call.
+ */
+public class ConnConfig {
+  /** Named set of defaults: "bulk-load", "read-mostly" or "durable" */
+  public static final String PROFILE = "profile";
+  /** ro, rw or rwc (default) */
+  public static final String MODE = "mode";
+  /** shared or private */
+  public static final String CACHE = "cache";
+  public static final String VFS = "vfs";
+  /** in milliseconds (default 3000) */
+  public static final String BUSY_TIMEOUT = "busy_timeout";
+  /** Java-side busy handler policy bounded by busy_timeout: exponential, yield-first or deadline (default: SQLite's own) */
+  public static final String BUSY_HANDLER = "busy_handler";
+  public static final String STMT_CACHE_SIZE = JDBC.STMT_CACHE_SIZE;
+  /** true to aggregate statement status counters by SQL text (default false), read via {@code unwrap(org.sqlite.Conn.class).getStmtStats()} */
+  public static final String STMT_STATS = "stmt_stats";
+  /** in milliseconds: executions taking longer are logged with their query plan (default: none) */
+  public static final String SLOW_QUERY_THRESHOLD = "slow_query_threshold";
+  /** org.sqlite.TraceListener class name (with a public no-arg constructor) or instance (default: none) */
+  public static final String TRACE_LISTENER = "trace_listener";
+  /** events traced: comma separated list of stmt, profile, row and close (default "stmt,profile,close") */
+  public static final String TRACE_MASK = "trace_mask";
+  /** true to register the database MBean (see {@link DbMonitor}) and the pool MBean (default false) */
+  public static final String JMX = "jmx";
+  /** in auto-commit mode, executeBatch is run in transactions committed every N rows (default 0: one transaction per row) */
+  public static final String BATCH_COMMIT_SIZE = "batch_commit_size";
+  /** true to execute batched single-row <code>INSERT ... VALUES (?, ...)</code> as multi-row inserts (default false) */
+  public static final String REWRITE_BATCHED_INSERTS = "rewrite_batched_inserts";
+  public static final String PAGE_SIZE = "page_size";
+  public static final String LOCKING_MODE = "locking_mode";
+  public static final String JOURNAL_MODE = "journal_mode";
+  public static final String SYNCHRONOUS = "synchronous";
+  public static final String CACHE_SIZE = "cache_size";
+  public static final String MMAP_SIZE = "mmap_size";
+  public static final String TEMP_STORE = "temp_store";
+  public static final String FOREIGN_KEYS = "foreign_keys";
+
+  private static final String[] KEYS = {PROFILE, MODE, CACHE, VFS, BUSY_TIMEOUT, BUSY_HANDLER, STMT_CACHE_SIZE, STMT_STATS,
+      SLOW_QUERY_THRESHOLD, TRACE_LISTENER, TRACE_MASK, JMX, BATCH_COMMIT_SIZE, REWRITE_BATCHED_INSERTS,
+      PAGE_SIZE, LOCKING_MODE, JOURNAL_MODE, SYNCHRONOUS, CACHE_SIZE, MMAP_SIZE, TEMP_STORE, FOREIGN_KEYS};
+
+  private static final String[] MODES = {"ro", "rw", "rwc"};
+  private static final String[] CACHES = {"shared", "private"};
+  private static final String[] BUSY_HANDLERS = {"exponential", "yield-first", "deadline"};
+  private static final String[] LOCKING_MODES = {"NORMAL", "EXCLUSIVE"};
+  private static final String[] JOURNAL_MODES = {"DELETE", "TRUNCATE", "PERSIST", "MEMORY", "WAL", "OFF"};
+  private static final String[] SYNCHRONOUS_LEVELS = {"OFF", "NORMAL", "FULL", "EXTRA"};
+  private static final String[] TEMP_STORES = {"DEFAULT", "FILE", "MEMORY"};
+  private static final String[] BOOLEANS = {"true", "false"};
+  private static final String[] TRACE_EVENTS = {"stmt", "profile", "row", "close"};
+
+  private static final Map<String, Properties> PROFILES = new HashMap<String, Properties>();
+  static {
+    // Durability traded for speed: a crash during the load may corrupt the database.
+    PROFILES.put("bulk-load", profile(
+        JOURNAL_MODE, "OFF",
+        SYNCHRONOUS, "OFF",
+        LOCKING_MODE, "EXCLUSIVE",
+        TEMP_STORE, "MEMORY",
+        CACHE_SIZE, "-65536")); // 64 MiB
+    // Concurrent readers with one writer.
+    PROFILES.put("read-mostly", profile(
+        JOURNAL_MODE, "WAL",
+        SYNCHRONOUS, "NORMAL",
+        TEMP_STORE, "MEMORY",
+        CACHE_SIZE, "-16384", // 16 MiB
+        MMAP_SIZE, "268435456")); // 256 MiB
+    // Each commit is synced.
+    PROFILES.put("durable", profile(
+        JOURNAL_MODE, "WAL",
+        SYNCHRONOUS, "FULL",
+        FOREIGN_KEYS, "true"));
+  }
+  private static Properties profile(String... pairs) {
+    final Properties p = new Properties();
+    for (int i = 0; i < pairs.length; i += 2) {
+      p.setProperty(pairs[i], pairs[i + 1]);
+    }
+    return p;
+  }
+
+  // number of retries with Thread.yield before sleeping (yield-first busy handler)
+  private static final int YIELDS = 3;
+
+  private final String filename;
+  private final Properties props;
+
+  private int flags = OpenFlags.SQLITE_OPEN_READWRITE | OpenFlags.SQLITE_OPEN_CREATE | OpenFlags.SQLITE_OPEN_FULLMUTEX |
+      OpenFlags.SQLITE_OPEN_URI;
+  private String vfs;
+  private int busyTimeout = 3000;
+  private String busyHandler;
+  private int stmtCacheSize = -1;
+  // shared by all the connections opened with this config
+  private StmtStats stmtStats;
+  private SlowQueryLog slowQueryLog;
+  // shared by all the connections opened with this config
+  private TraceListener traceListener;
+  private int traceMask = TraceMasks.SQLITE_TRACE_STMT | TraceMasks.SQLITE_TRACE_PROFILE | TraceMasks.SQLITE_TRACE_CLOSE;
+  private boolean jmx;
+  private int batchCommitSize;
+  private boolean rewriteBatchedInserts;
+  private Integer pageSize;
+  private String lockingMode;
+  private String journalMode;
+  private String synchronous;
+  private Integer cacheSize;
+  private Long mmapSize;
+  private String tempStore;
+  private Boolean foreignKeys;
+
+  /**
+   * @param url  file name (without the "jdbc:sqlite:" prefix), with an optional query
+   * @param info connection properties (may be null)
+   * @throws SQLException if a setting is invalid
+   */
+  public static ConnConfig parse(String url, Properties info) throws SQLException {
+    String filename = url;
+    final Properties props = new Properties();
+    final int q = url.indexOf('?');
+    if (q >= 0) {
+      // URI filename's parameters are also interpreted by SQLite (unknown ones are ignored)
+      if (!url.startsWith("file:")) {
+        filename = url.substring(0, q);
+      }
+      parseQuery(url.substring(q + 1), props);
+    }
+    if (info != null) {
+      for (String key : KEYS) {
+        final String value = info.getProperty(key);
+        if (value != null) {
+          props.setProperty(key, value);
+        }
+      }
+    }
+    final String profileName = props.getProperty(PROFILE);
+    if (profileName != null) {
+      final Properties profile = PROFILES.get(profileName);
+      if (profile == null) {
+        throw Util.error(String.format("unknown %s: '%s' (expected one of %s)", PROFILE, profileName, PROFILES.keySet()));
+      }
+      for (String key : profile.stringPropertyNames()) {
+        if (props.getProperty(key) == null) {
+          props.setProperty(key, profile.getProperty(key));
+        }
+      }
+    }
+    final ConnConfig config = new ConnConfig(filename, props);
+    if (info != null && info.get(TRACE_LISTENER) instanceof TraceListener) {
+      config.traceListener = (TraceListener) info.get(TRACE_LISTENER);
+    }
+    config.validate();
+    return config;
+  }
+
+  private static void parseQuery(String query, Properties props) throws SQLException {
+    for (String param : query.split("&")) {
+      if (param.isEmpty()) {
+        continue;
+      }
+      final int eq = param.indexOf('=');
+      try {
+        final String key = URLDecoder.decode(eq < 0 ? param : param.substring(0, eq), "UTF-8");
+        final String value = eq < 0 ? "" : URLDecoder.decode(param.substring(eq + 1), "UTF-8");
+        if (Arrays.asList(KEYS).contains(key)) {
+          props.setProperty(key, value);
+        }
+      } catch (UnsupportedEncodingException e) {
+        throw new SQLException(e);
+      } catch (IllegalArgumentException e) {
+        throw Util.error(String.format("invalid URL parameter: '%s'", param));
+      }
+    }
+  }
+
+  private ConnConfig(String filename, Properties props) {
+    this.filename = filename;
+    this.props = props;
+  }
+
+  private void validate() throws SQLException {
+    final String mode = choice(MODE, MODES);
+    if ("ro".equals(mode)) {
+      flags = (flags & ~(OpenFlags.SQLITE_OPEN_READWRITE | OpenFlags.SQLITE_OPEN_CREATE)) | OpenFlags.SQLITE_OPEN_READONLY;
+    } else if ("rw".equals(mode)) {
+      flags &= ~OpenFlags.SQLITE_OPEN_CREATE;
+    }
+    final String cache = choice(CACHE, CACHES);
+    if ("shared".equals(cache)) {
+      flags |= OpenFlags.SQLITE_OPEN_SHAREDCACHE;
+    } else if ("private".equals(cache)) {
+      flags |= OpenFlags.SQLITE_OPEN_PRIVATECACHE;
+    }
+    vfs = props.getProperty(VFS);
+    final Long busyTimeout = toLong(BUSY_TIMEOUT);
+    if (busyTimeout != null) {
+      this.busyTimeout = busyTimeout.intValue();
+    }
+    busyHandler = choice(BUSY_HANDLER, BUSY_HANDLERS);
+    final Long stmtCacheSize = toLong(STMT_CACHE_SIZE);
+    if (stmtCacheSize != null) {
+      this.stmtCacheSize = stmtCacheSize.intValue();
+    }
+    if ("true".equals(choice(STMT_STATS, BOOLEANS))) {
+      stmtStats = new StmtStats();
+    }
+    final Long slowQueryThreshold = toLong(SLOW_QUERY_THRESHOLD);
+    if (slowQueryThreshold != null) {
+      slowQueryLog = new SlowQueryLog(slowQueryThreshold);
+    }
+    final String traceListener = props.getProperty(TRACE_LISTENER);
+    if (traceListener != null && this.traceListener == null) {
+      this.traceListener = newTraceListener(traceListener.trim());
+    }
+    final String traceMask = props.getProperty(TRACE_MASK);
+    if (traceMask != null) {
+      this.traceMask = 0;
+      for (String event : traceMask.split(",")) {
+        final int i = Arrays.asList(TRACE_EVENTS).indexOf(event.trim().toLowerCase(Locale.ROOT));
+        if (i < 0) {
+          throw Util.error(String.format("invalid %s: '%s' (expected a list of %s)", TRACE_MASK, traceMask, Arrays.toString(TRACE_EVENTS)));
+        }
+        this.traceMask |= 1 << i;
+      }
+    }
+    jmx = "true".equals(choice(JMX, BOOLEANS));
+    final Long batchCommitSize = toLong(BATCH_COMMIT_SIZE);
+    if (batchCommitSize != null) {
+      if (batchCommitSize < 0) {
+        throw Util.error(String.format("invalid %s: %d (expected >= 0)", BATCH_COMMIT_SIZE, batchCommitSize));
+      }
+      this.batchCommitSize = batchCommitSize.intValue();
+    }
+    rewriteBatchedInserts = "true".equals(choice(REWRITE_BATCHED_INSERTS, BOOLEANS));
+    final Long pageSize = toLong(PAGE_SIZE);
+    this.pageSize = pageSize == null ? null : pageSize.intValue();
+    lockingMode = choice(LOCKING_MODE, LOCKING_MODES);
+    journalMode = choice(JOURNAL_MODE, JOURNAL_MODES);
+    synchronous = choice(SYNCHRONOUS, SYNCHRONOUS_LEVELS);
+    final Long cacheSize = toLong(CACHE_SIZE);
+    this.cacheSize = cacheSize == null ? null : cacheSize.intValue();
+    mmapSize = toLong(MMAP_SIZE);
+    tempStore = choice(TEMP_STORE, TEMP_STORES);
+    final String foreignKeys = choice(FOREIGN_KEYS, BOOLEANS);
+    this.foreignKeys = foreignKeys == null ? null : Boolean.valueOf(foreignKeys);
+  }
+
+  private static TraceListener newTraceListener(String className) throws SQLException {
+    try {
+      ClassLoader loader = Thread.currentThread().getContextClassLoader();
+      if (loader == null) {
+        loader = ConnConfig.class.getClassLoader();
+      }
+      final Class<?> clazz = Class.forName(className, true, loader);
+      if (!TraceListener.class.isAssignableFrom(clazz)) {
+        throw Util.error(String.format("invalid %s: '%s' does not implement %s", TRACE_LISTENER, className, TraceListener.class.getName()));
+      }
+      return (TraceListener) clazz.getDeclaredConstructor().newInstance();
+    } catch (ClassNotFoundException e) {
+      throw new SQLException(String.format("invalid %s: '%s' not found", TRACE_LISTENER, className), e);
+    } catch (NoSuchMethodException e) {
+      throw new SQLException(String.format("invalid %s: '%s' has no public no-arg constructor", TRACE_LISTENER, className), e);
+    } catch (InvocationTargetException e) {
+      throw new SQLException(String.format("invalid %s: '%s' constructor failed", TRACE_LISTENER, className), e.getCause());
+    } catch (InstantiationException | IllegalAccessException | SecurityException e) {
+      throw new SQLException(String.format("invalid %s: '%s' cannot be instantiated", TRACE_LISTENER, className), e);
+    }
+  }
+
+  private String choice(String key, String[] choices) throws SQLException {
+    final String value = props.getProperty(key);
+    if (value == null) {
+      return null;
+    }
+    for (String choice : choices) {
+      if (choice.equalsIgnoreCase(value)) {
+        return choice;
+      }
+    }
+    throw Util.error(String.format("invalid %s: '%s' (expected one of %s)", key, value, Arrays.toString(choices)));
+  }
+  private Long toLong(String key) throws SQLException {
+    final String value = props.getProperty(key);
+    if (value == null) {
+      return null;
+    }
+    try {
+      return Long.valueOf(value.trim());
+    } catch (NumberFormatException e) {
+      throw Util.error(String.format("invalid %s: '%s'", key, value));
+    }
+  }
+
+  public String getFilename() {
+    return filename;
+  }
+  /**
+   * @return org.sqlite.OpenFlags.*
+   */
+  public int getFlags() {
+    return flags;
+  }
+  public String getVfs() {
+    return vfs;
+  }
+  public int getBusyTimeout() {
+    return busyTimeout;
+  }
+  /**
+   * @return null when SQLite's busy timeout is used
+   */
+  public BusyHandler getBusyHandler() {
+    if ("exponential".equals(busyHandler)) {
+      return BusyHandlers.exponential(busyTimeout);
+    } else if ("yield-first".equals(busyHandler)) {
+      return BusyHandlers.yieldFirst(YIELDS, BusyHandlers.exponential(busyTimeout));
+    } else if ("deadline".equals(busyHandler)) {
+      return BusyHandlers.deadline(busyTimeout);
+    }
+    return null;
+  }
+  /**
+   * @return -1 when not specified
+   */
+  public int getStmtCacheSize() {
+    return stmtCacheSize;
+  }
+  /**
+   * @return statement status counters of all the connections opened with this config or null when disabled
+   */
+  public StmtStats getStmtStats() {
+    return stmtStats;
+  }
+  /**
+   * @return slow query log shared by all the connections opened with this config or null when disabled
+   */
+  public SlowQueryLog getSlowQueryLog() {
+    return slowQueryLog;
+  }
+  /**
+   * @return trace listener shared by all the connections opened with this config or null
+   */
+  public TraceListener getTraceListener() {
+    return traceListener;
+  }
+  /**
+   * @return org.sqlite.TraceMasks.*
+   */
+  public int getTraceMask() {
+    return traceMask;
+  }
+  public boolean isJmx() {
+    return jmx;
+  }
+  /**
+   * @return 0 when executeBatch is not wrapped in transactions
+   */
+  public int getBatchCommitSize() {
+    return batchCommitSize;
+  }
+  public boolean isRewriteBatchedInserts() {
+    return rewriteBatchedInserts;
+  }
+
+  /**
+   * @param readOnly true to skip the pragmas that write to the database file (page_size, journal_mode)
+   * @return pragmas script or an empty string
+   */
+  public String getPragmas(boolean readOnly) {
+    final StringBuilder sb = new StringBuilder();
+    // page_size must be set before switching to WAL mode
+    if (!readOnly) {
+      pragma(sb, PAGE_SIZE, pageSize);
+    }
+    pragma(sb, LOCKING_MODE, lockingMode);
+    if (!readOnly) {
+      pragma(sb, JOURNAL_MODE, journalMode);
+    }
+    pragma(sb, SYNCHRONOUS, synchronous);
+    pragma(sb, CACHE_SIZE, cacheSize);
+    pragma(sb, MMAP_SIZE, mmapSize);
+    pragma(sb, TEMP_STORE, tempStore);
+    pragma(sb, FOREIGN_KEYS, foreignKeys == null ? null : (foreignKeys ? "ON" : "OFF"));
+    return sb.toString();
+  }
+  private static void pragma(StringBuilder sb, String name, Object value) {
+    if (value != null) {
+      sb.append("PRAGMA ").append(name).append('=').append(value).append(';');
+    }
+  }
+
+  /**
+   * Sets the statement defaults of a new (logical) connection.
+   */
+  void init(Conn conn) throws SQLException {
+    conn.setBatchCommitSize(batchCommitSize);
+    conn.setRewriteBatchedInserts(rewriteBatchedInserts);
+  }
+
+  /**
+   * Sets busy timeout, statement cache size and pragmas on a newly opened connection.
+   */
+  void apply(org.sqlite.Conn c, int flags) throws SQLException {
+    final BusyHandler busyHandler = getBusyHandler();
+    if (busyHandler == null) {
+      c.setBusyTimeout(busyTimeout);
+    } else {
+      c.setBusyHandler(busyHandler);
+    }
+    if (stmtCacheSize >= 0) {
+      c.getStmtCache().setMaxSize(stmtCacheSize);
+    }
+    if (stmtStats != null) {
+      c.setStmtStats(stmtStats);
+    }
+    if (slowQueryLog != null) {
+      c.setSlowQueryLog(slowQueryLog);
+    }
+    if (traceListener != null) {
+      c.setTraceListener(traceListener, traceMask);
+    }
+    final String pragmas = getPragmas((flags & OpenFlags.SQLITE_OPEN_READONLY) != 0);
+    if (!pragmas.isEmpty()) {
+      c.fastExec(pragmas);
+    }
+  }
+
+  DriverPropertyInfo[] getPropertyInfo() {
+    final List<DriverPropertyInfo> infos = new ArrayList<DriverPropertyInfo>(KEYS.length);
+    infos.add(info(PROFILE, "named set of defaults", PROFILES.keySet().toArray(new String[PROFILES.size()])));
+    infos.add(info(MODE, "open mode: read-only, read-write or read-write-create", MODES));
+    infos.add(info(CACHE, "shared or private cache", CACHES));
+    infos.add(info(VFS, "name of the VFS", null));
+    infos.add(info(BUSY_TIMEOUT, "busy timeout in milliseconds", null));
+    infos.add(info(BUSY_HANDLER, "backoff policy used while waiting for a lock", BUSY_HANDLERS));
+    infos.add(info(STMT_CACHE_SIZE, "maximum number of idle prepared statements kept", null));
+    infos.add(info(STMT_STATS, "statement status counters aggregated by SQL text", BOOLEANS));
+    infos.add(info(SLOW_QUERY_THRESHOLD, "executions taking longer (in milliseconds) are logged", null));
+    infos.add(info(TRACE_LISTENER, "org.sqlite.TraceListener implementation class name", null));
+    infos.add(info(TRACE_MASK, "comma separated list of traced events", TRACE_EVENTS));
+    infos.add(info(JMX, "database and pool MBeans registration", BOOLEANS));
+    infos.add(info(BATCH_COMMIT_SIZE, "rows per transaction when a batch is executed in auto-commit mode", null));
+    infos.add(info(REWRITE_BATCHED_INSERTS, "batched single-row inserts executed as multi-row inserts", BOOLEANS));
+    infos.add(info(PAGE_SIZE, "page size in bytes (power of two between 512 and 65536)", null));
+    infos.add(info(LOCKING_MODE, "database connection locking-mode", LOCKING_MODES));
+    infos.add(info(JOURNAL_MODE, "journal mode", JOURNAL_MODES));
+    infos.add(info(SYNCHRONOUS, "synchronous flag", SYNCHRONOUS_LEVELS));
+    infos.add(info(CACHE_SIZE, "page cache size in pages (or in KiB when negative)", null));
+    infos.add(info(MMAP_SIZE, "maximum number of bytes used for memory-mapped I/O", null));
+    infos.add(info(TEMP_STORE, "temporary tables and indices location", TEMP_STORES));
+    infos.add(info(FOREIGN_KEYS, "foreign key constraints enforcement", BOOLEANS));
+    return infos.toArray(new DriverPropertyInfo[infos.size()]);
+  }
+  private DriverPropertyInfo info(String key, String description, String[] choices) {
+    final DriverPropertyInfo info = new DriverPropertyInfo(key, props.getProperty(key));
+    info.description = description;
+    info.choices = choices;
+    return info;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.ROOT, "ConnConfig(%s, flags: 0x%x, %s)", filename, flags, props);
+  }
+}
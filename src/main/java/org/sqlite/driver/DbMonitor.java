@@ -0,0 +1,359 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite.driver;
+
+import org.sqlite.BusyStats;
+import org.sqlite.DbStatus;
+import org.sqlite.Histogram;
+import org.sqlite.OpenFlags;
+import org.sqlite.SQLiteException;
+import org.sqlite.StmtCache;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * MBean registered as "org.sqlite:type=Database,name=<file name>" while at least one connection
+ * opened with the jmx property is open.
+ * The name is the full path returned by SQLite (in-memory and temporary databases share the ":memory:" name).
+ * Connections are registered once configured and unregistered by their close listener
+ * (whoever closes them), under the monitor lock: they are only used while holding it.
+ */
+public class DbMonitor implements DbMonitorMBean {
+  private static final ConcurrentMap<String, DbMonitor> MONITORS = new ConcurrentHashMap<String, DbMonitor>();
+  // first version where PRAGMA optimize can analyze tables not used by the connection (0x10000 flag)
+  private static final int OPTIMIZE_ALL_VERSION = 3046000;
+  private static final org.sqlite.Conn.CloseListener UNREGISTER = new org.sqlite.Conn.CloseListener() {
+    @Override
+    public void closing(org.sqlite.Conn c) {
+      unregister(c);
+    }
+  };
+
+  private final String filename;
+  private final ObjectName name;
+  private final Set<org.sqlite.Conn> conns = Collections.newSetFromMap(new WeakHashMap<org.sqlite.Conn, Boolean>());
+  private volatile long lastCheckpoint;
+  private volatile String lastCheckpointResult;
+
+  private DbMonitor(String filename) throws SQLException {
+    this.filename = filename;
+    try {
+      name = new ObjectName("org.sqlite:type=Database,name=" + ObjectName.quote(filename));
+    } catch (JMException e) {
+      throw new SQLException(e);
+    }
+  }
+
+  /**
+   * @return the MBean of the database (null when no connection is registered)
+   */
+  public static DbMonitor get(String filename) {
+    return MONITORS.get(filename);
+  }
+
+  // Called when a connection is opened and configured
+  static void register(org.sqlite.Conn c) throws SQLException {
+    final String path = c.getFilename();
+    final String filename = path == null || path.isEmpty() ? org.sqlite.Conn.MEMORY : path;
+    while (true) {
+      DbMonitor monitor = MONITORS.get(filename);
+      if (monitor == null) {
+        final DbMonitor created = new DbMonitor(filename);
+        monitor = MONITORS.putIfAbsent(filename, created);
+        if (monitor == null) {
+          monitor = created;
+          try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(monitor, monitor.name);
+          } catch (JMException e) {
+            MONITORS.remove(filename, monitor);
+            throw new SQLException(String.format("cannot register MBean '%s'", monitor.name), e);
+          }
+        }
+      }
+      synchronized (monitor) {
+        if (MONITORS.get(filename) == monitor) { // not concurrently unregistered
+          monitor.conns.add(c);
+          c.setCloseListener(UNREGISTER);
+          return;
+        }
+      }
+    }
+  }
+
+  // Called before closing a connection
+  private static void unregister(org.sqlite.Conn c) {
+    if (MONITORS.isEmpty()) {
+      return;
+    }
+    for (DbMonitor monitor : MONITORS.values()) {
+      synchronized (monitor) {
+        if (!monitor.conns.remove(c)) {
+          continue;
+        }
+        if (monitor.conns.isEmpty()) {
+          MONITORS.remove(monitor.filename, monitor);
+          final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+          try {
+            server.unregisterMBean(monitor.name);
+          } catch (JMException e) {
+            Util.trace(String.format("cannot unregister MBean '%s': %s", monitor.name, e.getMessage()));
+          }
+        }
+        return;
+      }
+    }
+  }
+
+  // Open connections (caller must hold the lock)
+  private List<org.sqlite.Conn> open() {
+    final List<org.sqlite.Conn> open = new ArrayList<org.sqlite.Conn>(conns.size());
+    for (org.sqlite.Conn c : conns) {
+      if (!c.isClosed()) {
+        open.add(c);
+      }
+    }
+    return open;
+  }
+
+  @Override
+  public String getFilename() {
+    return filename;
+  }
+  @Override
+  public synchronized int getOpenConnections() {
+    return open().size();
+  }
+
+  @Override
+  public synchronized long getStmtCacheHits() {
+    long hits = 0;
+    for (org.sqlite.Conn c : open()) {
+      hits += c.getStmtCache().getHits();
+    }
+    return hits;
+  }
+  @Override
+  public synchronized long getStmtCacheMisses() {
+    long misses = 0;
+    for (org.sqlite.Conn c : open()) {
+      misses += c.getStmtCache().getMisses();
+    }
+    return misses;
+  }
+  @Override
+  public synchronized long getStmtCacheEvictions() {
+    long evictions = 0;
+    for (org.sqlite.Conn c : open()) {
+      evictions += c.getStmtCache().getEvictions();
+    }
+    return evictions;
+  }
+  @Override
+  public synchronized int getStmtCacheSize() {
+    int size = 0;
+    for (org.sqlite.Conn c : open()) {
+      final StmtCache cache = c.getStmtCache();
+      size += cache.size();
+    }
+    return size;
+  }
+
+  private synchronized Histogram busyWaits() {
+    final Histogram waits = new Histogram();
+    for (org.sqlite.Conn c : open()) {
+      waits.add(c.getBusyStats().getWaits());
+    }
+    return waits;
+  }
+  @Override
+  public long getBusyWaits() {
+    return busyWaits().getCount();
+  }
+  @Override
+  public synchronized long getBusyGiveUps() {
+    long giveUps = 0;
+    for (org.sqlite.Conn c : open()) {
+      final BusyStats stats = c.getBusyStats();
+      giveUps += stats.getGiveUps();
+    }
+    return giveUps;
+  }
+  @Override
+  public double getBusyWaitMeanMicros() {
+    return busyWaits().getMean();
+  }
+  @Override
+  public long getBusyWaitP99Micros() {
+    return busyWaits().getQuantile(0.99);
+  }
+  @Override
+  public long getBusyWaitMaxMicros() {
+    return busyWaits().getMax();
+  }
+
+  // Sum of the current values (or of the highest values) of a sqlite3_db_status parameter
+  private synchronized long dbStatus(int op, boolean highwater) {
+    long sum = 0;
+    for (org.sqlite.Conn c : open()) {
+      try {
+        sum += c.getDbStatus(op, false)[highwater ? 1 : 0];
+      } catch (SQLiteException e) {
+        Util.trace(String.format("cannot read status of '%s': %s", filename, e.getMessage()));
+      }
+    }
+    return sum;
+  }
+  @Override
+  public long getCacheHits() {
+    return dbStatus(DbStatus.SQLITE_DBSTATUS_CACHE_HIT, false);
+  }
+  @Override
+  public long getCacheMisses() {
+    return dbStatus(DbStatus.SQLITE_DBSTATUS_CACHE_MISS, false);
+  }
+  @Override
+  public long getCacheWrites() {
+    return dbStatus(DbStatus.SQLITE_DBSTATUS_CACHE_WRITE, false);
+  }
+  @Override
+  public long getCacheSpills() {
+    return dbStatus(DbStatus.SQLITE_DBSTATUS_CACHE_SPILL, false);
+  }
+  @Override
+  public long getCacheUsed() {
+    return dbStatus(DbStatus.SQLITE_DBSTATUS_CACHE_USED, false);
+  }
+  @Override
+  public long getSchemaUsed() {
+    return dbStatus(DbStatus.SQLITE_DBSTATUS_SCHEMA_USED, false);
+  }
+  @Override
+  public long getStmtUsed() {
+    return dbStatus(DbStatus.SQLITE_DBSTATUS_STMT_USED, false);
+  }
+  @Override
+  public long getLookasideUsed() {
+    return dbStatus(DbStatus.SQLITE_DBSTATUS_LOOKASIDE_USED, false);
+  }
+  @Override
+  public long getMemoryUsed() {
+    try {
+      return org.sqlite.Conn.getStatus(org.sqlite.Status.SQLITE_STATUS_MEMORY_USED, false)[0];
+    } catch (SQLiteException e) {
+      return -1;
+    }
+  }
+
+  @Override
+  public long getWalSize() {
+    return isFile() ? new File(filename + "-wal").length() : 0;
+  }
+  @Override
+  public long getLastCheckpoint() {
+    return lastCheckpoint;
+  }
+  @Override
+  public String getLastCheckpointResult() {
+    return lastCheckpointResult;
+  }
+
+  private boolean isFile() {
+    return !filename.isEmpty() && !org.sqlite.Conn.MEMORY.equals(filename) && !filename.startsWith("file:");
+  }
+  // Maintenance is done on a short-lived connection: the application's connections are left untouched.
+  private org.sqlite.Conn openDedicated() throws SQLException {
+    if (!isFile()) {
+      throw new SQLException(String.format("'%s' is not a database file", filename));
+    }
+    final org.sqlite.Conn c = org.sqlite.Conn.open(filename, OpenFlags.SQLITE_OPEN_READWRITE | OpenFlags.SQLITE_OPEN_FULLMUTEX, null);
+    c.setBusyTimeout(1000);
+    return c;
+  }
+
+  @Override
+  public String checkpoint() throws SQLException {
+    final org.sqlite.Conn c = openDedicated();
+    try {
+      final org.sqlite.Stmt s = c.prepare("PRAGMA wal_checkpoint(PASSIVE)", false);
+      try {
+        if (!s.step()) {
+          throw new SQLException("no checkpoint result");
+        }
+        final String result = String.format("busy: %d, log: %d, checkpointed: %d",
+            s.getColumnInt(0), s.getColumnInt(1), s.getColumnInt(2));
+        lastCheckpoint = System.currentTimeMillis();
+        lastCheckpointResult = result;
+        return result;
+      } finally {
+        s.close();
+      }
+    } finally {
+      c.closeAndCheck();
+    }
+  }
+
+  @Override
+  public int optimize() throws SQLException {
+    if (org.sqlite.Conn.libversionNumber() >= OPTIMIZE_ALL_VERSION) {
+      final org.sqlite.Conn c = openDedicated();
+      try {
+        c.fastExec("PRAGMA optimize=0x10002"); // analyze all tables (no query history on this connection)
+      } finally {
+        c.closeAndCheck();
+      }
+      return 1;
+    }
+    // only the tables used by a connection are analyzed: its query history is needed
+    int optimized = 0;
+    synchronized (this) {
+      for (org.sqlite.Conn c : open()) {
+        if (!c.isReadOnly() && c.getAutoCommit()) { // not in the middle of an application transaction
+          c.fastExec("PRAGMA optimize");
+          optimized++;
+        }
+      }
+    }
+    return optimized;
+  }
+
+  @Override
+  public synchronized long releaseMemory() throws SQLException {
+    final long before = getCacheUsed();
+    for (org.sqlite.Conn c : open()) {
+      c.releaseMemory();
+    }
+    return before - getCacheUsed();
+  }
+
+  @Override
+  public synchronized int interruptAll() throws SQLException {
+    final List<org.sqlite.Conn> open = open();
+    for (org.sqlite.Conn c : open) {
+      c.interrupt();
+    }
+    return open.size();
+  }
+
+  @Override
+  public String toString() {
+    return name.toString();
+  }
+}
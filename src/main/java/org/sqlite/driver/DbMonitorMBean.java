@@ -0,0 +1,72 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite.driver;
+
+import java.sql.SQLException;
+
+/**
+ * Management interface of a database (see {@link DbMonitor}).
+ * Counters are summed over the open connections.
+ */
+public interface DbMonitorMBean {
+  String getFilename();
+  int getOpenConnections();
+
+  long getStmtCacheHits();
+  long getStmtCacheMisses();
+  long getStmtCacheEvictions();
+  int getStmtCacheSize();
+
+  /** number of locking events handled by the Java busy handlers */
+  long getBusyWaits();
+  long getBusyGiveUps();
+  double getBusyWaitMeanMicros();
+  long getBusyWaitP99Micros();
+  long getBusyWaitMaxMicros();
+
+  long getCacheHits();
+  long getCacheMisses();
+  long getCacheWrites();
+  long getCacheSpills();
+  /** heap memory used by the page caches in bytes */
+  long getCacheUsed();
+  long getSchemaUsed();
+  long getStmtUsed();
+  long getLookasideUsed();
+  /** memory used by SQLite (process-wide) in bytes */
+  long getMemoryUsed();
+
+  /** size of the write-ahead log file in bytes (0 when there is none) */
+  long getWalSize();
+  /** end of the last checkpoint run by {@link #checkpoint()} (System.currentTimeMillis, 0 when none) */
+  long getLastCheckpoint();
+  String getLastCheckpointResult();
+
+  /**
+   * Runs a passive checkpoint on a dedicated connection.
+   * @return busy flag, number of frames in the WAL and number of frames checkpointed
+   */
+  String checkpoint() throws SQLException;
+  /**
+   * Runs PRAGMA optimize on a dedicated connection (analyzing all tables) with SQLite 3.46.0 or later,
+   * or else on the registered read-write connections not in a transaction (analyzing the tables they have used).
+   * @return number of connections optimized
+   */
+  int optimize() throws SQLException;
+  /**
+   * Frees the unused pages of each connection's page cache.
+   * @return number of bytes freed
+   */
+  long releaseMemory() throws SQLException;
+  /**
+   * Interrupts the running statements of all connections.
+   * @return number of connections interrupted
+   */
+  int interruptAll() throws SQLException;
+}
@@ -8,8 +8,6 @@
  */
 package org.sqlite.driver;
 
-import org.sqlite.OpenFlags;
-
 import java.sql.*;
 import java.util.Properties;
 import java.util.logging.Logger;
@@ -28,15 +26,39 @@ public class JDBC implements Driver {
   public static final String MEMORY = PREFIX + org.sqlite.Conn.MEMORY;
   public static final String TEMP_FILE = PREFIX + org.sqlite.Conn.TEMP_FILE;
 
+  /**
+   * Maximum number of idle prepared statements kept per connection (0 disables statement pooling).
+   */
+  public static final String STMT_CACHE_SIZE = "stmt_cache_size";
+
   @Override
   public Connection connect(String url, Properties info) throws SQLException {
     if (!acceptsURL(url)) return null;
-    final String vfs = null;
-    final int flags = OpenFlags.SQLITE_OPEN_READWRITE | OpenFlags.SQLITE_OPEN_CREATE | OpenFlags.SQLITE_OPEN_FULLMUTEX |
-        OpenFlags.SQLITE_OPEN_URI;
-    final org.sqlite.Conn conn = org.sqlite.Conn.open(url.substring(PREFIX.length()), flags, vfs);
-    conn.setBusyTimeout(3000);
-    return new Conn(conn, info);
+    final ConnConfig config = ConnConfig.parse(url.substring(PREFIX.length()), info);
+    final Conn conn = new Conn(open(config, config.getFlags(), false), info);
+    config.init(conn);
+    return conn;
+  }
+
+  /**
+   * Opens and configures a physical connection, registered with its database MBean (if any) once ready.
+   * @param wal true to switch the database to WAL mode
+   */
+  static org.sqlite.Conn open(ConnConfig config, int flags, boolean wal) throws SQLException {
+    final org.sqlite.Conn conn = org.sqlite.Conn.open(config.getFilename(), flags, config.getVfs());
+    try {
+      config.apply(conn, flags);
+      if (wal) {
+        WalDataSource.enableWal(conn);
+      }
+      if (config.isJmx()) {
+        DbMonitor.register(conn); // unregistered when closed
+      }
+    } catch (SQLException e) {
+      conn.close();
+      throw e;
+    }
+    return conn;
   }
   @Override
   public boolean acceptsURL(String url) throws SQLException {
@@ -44,8 +66,8 @@ public class JDBC implements Driver {
   }
   @Override
   public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) throws SQLException {
-    Util.trace("Driver.getPropertyInfo");
-    return new DriverPropertyInfo[0];  // TODO vfs, mode (ro, rw, rwc), cache, encoding, foreign_keys, locking_mode, recursive_triggers, synchronous, load_extension
+    if (!acceptsURL(url)) return new DriverPropertyInfo[0];
+    return ConnConfig.parse(url.substring(PREFIX.length()), info).getPropertyInfo(); // TODO encoding, recursive_triggers, load_extension
   }
   @Override
   public int getMajorVersion() {
@@ -0,0 +1,109 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite.driver;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.PooledConnection;
+import javax.sql.StatementEventListener;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Physical connection handing out logical connections:
+ * closing a logical connection does not close the physical one but notifies the listeners (the pool).
+ */
+public class PooledConn implements PooledConnection {
+  private org.sqlite.Conn c;
+  private final Properties info;
+  private final boolean readOnly;
+  private final ConnConfig config;
+  private Conn logical;
+
+  private final List<ConnectionEventListener> listeners = new CopyOnWriteArrayList<ConnectionEventListener>();
+
+  PooledConn(org.sqlite.Conn c, Properties info, boolean readOnly, ConnConfig config) {
+    this.c = c;
+    this.info = info;
+    this.readOnly = readOnly;
+    this.config = config;
+  }
+
+  boolean isReadOnly() {
+    return readOnly;
+  }
+
+  @Override
+  public synchronized Connection getConnection() throws SQLException {
+    if (c == null) {
+      throw new SQLException("PooledConnection closed");
+    }
+    c.checkOpen();
+    if (logical != null) { // only one logical connection at a time (no event fired)
+      final Conn previous = logical;
+      logical = null;
+      previous.close();
+    }
+    logical = new Conn(c, new Properties(info), this);
+    config.init(logical);
+    return logical;
+  }
+
+  // Called by the logical connection when closed by the application
+  void closed(Conn conn, SQLException e) {
+    synchronized (this) {
+      if (logical != conn) {
+        return;
+      }
+      logical = null;
+    }
+    final ConnectionEvent event = new ConnectionEvent(this, e);
+    for (ConnectionEventListener listener : listeners) {
+      if (e == null) {
+        listener.connectionClosed(event);
+      } else {
+        listener.connectionErrorOccurred(event);
+      }
+    }
+  }
+
+  @Override
+  public synchronized void close() throws SQLException {
+    if (c == null) {
+      return;
+    }
+    final org.sqlite.Conn conn = c;
+    c = null;
+    logical = null;
+    conn.closeAndCheck();
+  }
+
+  boolean isClosed() {
+    return c == null;
+  }
+
+  @Override
+  public void addConnectionEventListener(ConnectionEventListener listener) {
+    listeners.add(listener);
+  }
+  @Override
+  public void removeConnectionEventListener(ConnectionEventListener listener) {
+    listeners.remove(listener);
+  }
+  // Statements are pooled by the physical connection's statement cache (no event is fired).
+  @Override
+  public void addStatementEventListener(StatementEventListener listener) {
+  }
+  @Override
+  public void removeStatementEventListener(StatementEventListener listener) {
+  }
+}
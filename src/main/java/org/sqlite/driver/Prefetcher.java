@@ -0,0 +1,237 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite.driver;
+
+import org.sqlite.ColTypes;
+
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Steps a statement ahead of its consumer on the connection's thread:
+ * rows are copied into a bounded buffer (fetch size) so that the B-tree walk overlaps with the row processing.
+ * The connection's thread is never blocked: when the buffer is full, the producer returns the thread
+ * (so that other cursors of the same connection can be prefetched, nested loops for example)
+ * and is rescheduled by the consumer once the buffer is half empty.
+ * The statement must not be used by the consumer until the prefetcher is done or cancelled.
+ */
+final class Prefetcher implements Runnable {
+  private static final Object[] END = new Object[0];
+
+  private final Stmt s;
+  private final org.sqlite.Stmt stmt;
+  private final int columnCount;
+  private final int maxRows;
+  private final int fetchSize;
+  private final BlockingQueue<Object[]> buffer;
+  private final ExecutorService executor;
+  // true while a burst is queued or running (and once the end is buffered)
+  private final AtomicBoolean scheduled = new AtomicBoolean(true);
+  private volatile boolean cancelled;
+  private volatile SQLException error;
+  // producer side (one burst at a time)
+  private Object[] pending; // copied but not buffered yet
+  private int rows;
+  private boolean hasRow = true;
+  // consumer side
+  private boolean done;
+  private Future<?> task; // last burst scheduled
+
+  /**
+   * @param stmt trusted statement positioned on its first row
+   */
+  Prefetcher(Stmt s, org.sqlite.Stmt stmt, int fetchSize) throws SQLException {
+    this.s = s;
+    this.stmt = stmt;
+    this.columnCount = stmt.getColumnCount();
+    this.maxRows = s.getMaxRows();
+    this.fetchSize = fetchSize;
+    this.buffer = new ArrayBlockingQueue<Object[]>(fetchSize);
+    this.executor = s.getExecutor();
+    try {
+      this.task = submit();
+    } catch (RejectedExecutionException e) {
+      throw new SQLException("connection closed", e);
+    }
+  }
+
+  int getFetchSize() {
+    return fetchSize;
+  }
+
+  private Future<?> submit() {
+    final FutureTask<Void> burst = new FutureTask<Void>(this, null) {
+      @Override
+      protected void done() {
+        if (isCancelled() && !cancelled) { // connection closed before the burst ran
+          end(new SQLException("connection closed while prefetching"));
+        }
+      }
+    };
+    executor.execute(burst);
+    return burst;
+  }
+
+  // Fills the buffer (connection's thread).
+  @Override
+  public void run() {
+    while (!cancelled) {
+      if (pending == null) {
+        pending = nextRow();
+      }
+      if (!buffer.offer(pending)) { // full: the thread is returned
+        scheduled.set(false);
+        if (buffer.size() > fetchSize / 2 || !scheduled.compareAndSet(false, true)) {
+          return; // rescheduled by the consumer
+        }
+        continue;
+      }
+      if (pending == END) {
+        return; // never rescheduled
+      }
+      pending = null;
+    }
+  }
+
+  // Copies the current row and steps to the next one (END when there is no more row)
+  private Object[] nextRow() {
+    if (!hasRow) {
+      return END;
+    }
+    final Object[] row;
+    try {
+      if (Thread.currentThread().isInterrupted()) { // executor shut down
+        throw new SQLException("prefetching interrupted");
+      }
+      row = copyRow();
+    } catch (SQLException e) {
+      error = e;
+      hasRow = false;
+      return END;
+    }
+    rows++;
+    try {
+      if (maxRows != 0 && rows >= maxRows) {
+        stmt.reset();
+        hasRow = false;
+      } else {
+        hasRow = s.step(stmt);
+      }
+    } catch (SQLException e) {
+      error = e;
+      hasRow = false;
+    }
+    return row;
+  }
+
+  // Buffers the end when no burst can run anymore
+  private void end(SQLException e) {
+    if (error == null) {
+      error = e;
+    }
+    if (!buffer.offer(END)) {
+      buffer.clear();
+      buffer.offer(END);
+    }
+  }
+
+  private Object[] copyRow() throws SQLException {
+    final Object[] row = new Object[columnCount];
+    for (int iCol = 0; iCol < columnCount; iCol++) {
+      switch (stmt.columnType(iCol)) {
+        case ColTypes.SQLITE_INTEGER:
+          row[iCol] = stmt.columnLong(iCol);
+          break;
+        case ColTypes.SQLITE_FLOAT:
+          row[iCol] = stmt.columnDouble(iCol);
+          break;
+        case ColTypes.SQLITE_TEXT:
+          row[iCol] = stmt.columnText(iCol);
+          break;
+        case ColTypes.SQLITE_BLOB:
+          final byte[] blob = stmt.columnBlob(iCol);
+          row[iCol] = blob == null ? new byte[0] : blob; // zero-length BLOB
+          break;
+      }
+    }
+    return row;
+  }
+
+  /**
+   * @return the next row or null when there is no more row
+   * @throws SQLException if stepping failed
+   */
+  Object[] next() throws SQLException {
+    if (done) {
+      return null;
+    }
+    final Object[] row;
+    try {
+      row = buffer.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("interrupted while waiting for the next row", e);
+    }
+    if (row == END) {
+      done = true;
+      if (error != null) {
+        throw error;
+      }
+      return null;
+    }
+    if (buffer.size() <= fetchSize / 2 && scheduled.compareAndSet(false, true)) { // the producer is parked
+      try {
+        task = submit();
+      } catch (RejectedExecutionException e) {
+        end(new SQLException("connection closed while prefetching", e));
+      }
+    }
+    return row;
+  }
+
+  /**
+   * Stops stepping and waits until the statement is released by the connection's thread.
+   */
+  void cancel() {
+    cancelled = true;
+    final Future<?> t = task;
+    if (!t.cancel(false)) { // running (not on this thread) or done
+      try {
+        t.get();
+      } catch (ExecutionException | CancellationException e) {
+        // ignored
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    buffer.clear();
+    done = true;
+  }
+
+  static int typeOf(Object value) {
+    if (value == null) {
+      return ColTypes.SQLITE_NULL;
+    } else if (value instanceof Long) {
+      return ColTypes.SQLITE_INTEGER;
+    } else if (value instanceof Double) {
+      return ColTypes.SQLITE_FLOAT;
+    } else if (value instanceof String) {
+      return ColTypes.SQLITE_TEXT;
+    }
+    return ColTypes.SQLITE_BLOB;
+  }
+}
@@ -8,7 +8,9 @@
  */
 package org.sqlite.driver;
 
+import org.sqlite.BindBatch;
 import org.sqlite.ErrCodes;
+import org.sqlite.Limits;
 import org.sqlite.StmtException;
 
 import java.io.InputStream;
@@ -66,15 +68,20 @@ public class PrepStmt extends Stmt implements PreparedStatement, ParameterMetaDa
   private boolean batching;
   private Object[] bindings;
   private List<Object[]> batch; // list of bindings
+  private boolean rewriteBatchedInserts;
+  private BatchInsert insert; // multi-row form (null if not rewritable)
+  private boolean insertParsed;
 
   PrepStmt(Conn c, org.sqlite.Stmt stmt) {
     super(c, stmt);
+    this.rewriteBatchedInserts = c.isRewriteBatchedInserts();
   }
 
   @Override
   public ResultSet executeQuery() throws SQLException {
+    stopPrefetch();
     final org.sqlite.Stmt stmt = getStmt();
-    final boolean hasRow = stmt.step();
+    final boolean hasRow = step(stmt);
     if (!hasRow && stmt.getColumnCount() == 0) {
       throw new StmtException(stmt, "query does not return a ResultSet", ErrCodes.WRAPPER_SPECIFIC);
     }
@@ -82,8 +89,9 @@ public class PrepStmt extends Stmt implements PreparedStatement, ParameterMetaDa
   }
   @Override
   public int executeUpdate() throws SQLException {
+    stopPrefetch();
     final org.sqlite.Stmt stmt = getStmt();
-    if (stmt.step() || stmt.getColumnCount() != 0) {
+    if (step(stmt) || stmt.getColumnCount() != 0) {
       throw new StmtException(stmt, "statement returns a ResultSet", ErrCodes.WRAPPER_SPECIFIC);
     }
     return getConn().getChanges();
@@ -220,8 +228,48 @@ public class PrepStmt extends Stmt implements PreparedStatement, ParameterMetaDa
     batching = false;
   }
 
+  /**
+   * Columnar batch: the statement is bound and executed for each of the first <code>rows</code> rows
+   * without boxing nor per-row allocation (the pending {@link #addBatch()} entries are not affected).
+   * @return update counts (like {@link #executeBatch()})
+   * @throws BatchUpdateException if one or more rows failed (the following rows are executed)
+   */
+  public int[] executeMany(BindBatch batch, int rows) throws SQLException {
+    stopPrefetch();
+    final org.sqlite.Stmt stmt = getStmt();
+    if (batch.getParamCount() != stmt.getBindParameterCount()) {
+      throw new StmtException(stmt, String.format("batch parameter count (%d) != parameter count (%d)", batch.getParamCount(), stmt.getBindParameterCount()), ErrCodes.WRAPPER_SPECIFIC);
+    }
+    if (batch.getRowCount() < rows) {
+      throw Util.error(String.format("row count (%d) > batch row count (%d)", rows, batch.getRowCount()));
+    }
+    if (stmt.getColumnCount() != 0) {
+      throw new StmtException(stmt, "statement returns a ResultSet", ErrCodes.WRAPPER_SPECIFIC);
+    }
+    Exception cause = null;
+    final int[] changes = new int[rows];
+    for (int row = 0; row < rows; row++) {
+      try {
+        changes[row] = exec(stmt, batch, row);
+      } catch (SQLException e) {
+        if (cause == null) {
+          cause = e;
+        }
+        changes[row] = EXECUTE_FAILED;
+        if (isInterrupted(e)) { // the remaining rows are not executed
+          throw new BatchUpdateException("batch interrupted", Arrays.copyOf(changes, row + 1), e);
+        }
+      }
+    }
+    if (cause != null) {
+      throw new BatchUpdateException("batch failed", changes, cause);
+    }
+    return changes;
+  }
+
   @Override
   public int[] executeBatch() throws SQLException {
+    stopPrefetch();
     final org.sqlite.Stmt stmt = getStmt();
     batching = false;
     if (batch == null) {
@@ -231,29 +279,117 @@ public class PrepStmt extends Stmt implements PreparedStatement, ParameterMetaDa
     Exception cause = null;
     Object[] params;
     final int[] changes = new int[size];
-    for (int i = 0; i < size; ++i) {
-      try {
-        params = batch.get(i);
-        if (params != null) {
-          for (int j = 0; j < params.length; j++) {
-            stmt.bindByIndex(j + 1, params[j]);
+    final BatchTx tx = beginBatch();
+    try {
+      BatchInsert insert = rewriteBatchedInserts ? getBatchInsert(stmt) : null;
+      if (insert != null && insert.isRollback() && !tx.isActive()) {
+        insert = null; // the rows before the failed one cannot be retried
+      }
+      final int chunkSize = insert == null ? 1 :
+          getConn().getLimit(Limits.SQLITE_LIMIT_VARIABLE_NUMBER) / insert.getParamCount();
+      int i = 0;
+      while (i < size) {
+        final int n = Math.min(chunkSize, size - i);
+        if (n > 1) {
+          if (executeRows(insert, i, n, changes, tx)) {
+            i += n;
+            tx.executed(i - 1, changes);
+            continue;
           }
+          tx.restarted(i - 1, changes); // the rows of the chunk are retried one by one
         }
-        changes[i] = executeUpdate();
-      } catch (SQLException e) {
-        if (cause == null) {
-          cause = e;
+        for (final int end = i + n; i < end; ++i) {
+          try {
+            params = batch.get(i);
+            if (params != null) {
+              for (int j = 0; j < params.length; j++) {
+                stmt.bindByIndex(j + 1, params[j]);
+              }
+            }
+            changes[i] = executeUpdate();
+          } catch (SQLException e) {
+            if (cause == null) {
+              cause = e;
+            }
+            changes[i] = EXECUTE_FAILED;
+          }
+          tx.executed(i, changes);
         }
-        changes[i] = EXECUTE_FAILED;
       }
+      tx.end(changes);
+    } finally {
+      tx.abort();
+      clearBatch();
     }
-    clearBatch();
     if (cause != null) {
       throw new BatchUpdateException("batch failed", changes, cause);
     }
     return changes;
   }
 
+  /**
+   * @param rewrite true to execute batched rows of a single-row <code>INSERT ... VALUES (?, ...)</code>
+   *                as multi-row inserts (as many rows per statement as SQLITE_LIMIT_VARIABLE_NUMBER allows).
+   *                The statement is executed as usual when it cannot be rewritten (named parameters, upsert, RETURNING, ...).
+   *                When a multi-row insert fails because of a constraint violation, its rows are executed one by one
+   *                to report which ones failed; any other error ends the batch.
+   *                <code>INSERT OR FAIL</code> is never rewritten, <code>INSERT OR ROLLBACK</code> only when the batch
+   *                is wrapped in a transaction (see {@link Stmt#setBatchCommitSize(int)}).
+   *                It must not be enabled for tables declared with an <code>ON CONFLICT FAIL</code> constraint.
+   *                When some rows are ignored (<code>INSERT OR IGNORE</code>), the update counts of the multi-row insert
+   *                are {@link #SUCCESS_NO_INFO}.
+   */
+  public void setRewriteBatchedInserts(boolean rewrite) throws SQLException {
+    checkOpen();
+    this.rewriteBatchedInserts = rewrite;
+  }
+  public boolean isRewriteBatchedInserts() {
+    return rewriteBatchedInserts;
+  }
+
+  private BatchInsert getBatchInsert(org.sqlite.Stmt stmt) throws SQLException {
+    if (!insertParsed) {
+      insert = BatchInsert.parse(stmt.getSql());
+      if (insert != null && insert.getParamCount() != stmt.getBindParameterCount()) {
+        insert = null;
+      }
+      insertParsed = true;
+    }
+    return insert;
+  }
+
+  // Executes the rows [from, from + n) as one multi-row insert (statement cached by the connection).
+  // @return false if a row violates a constraint (nothing has been inserted)
+  // @throws BatchUpdateException for any other error
+  private boolean executeRows(BatchInsert insert, int from, int n, int[] changes, BatchTx tx) throws SQLException {
+    final org.sqlite.Conn c = getConn();
+    org.sqlite.Stmt s = null;
+    try {
+      s = c.prepare(insert.sql(n));
+      final int paramCount = insert.getParamCount();
+      int index = 1;
+      for (int i = from; i < from + n; i++) {
+        final Object[] params = batch.get(i);
+        for (int j = 0; j < paramCount; j++) {
+          s.bindByIndex(index++, params == null || j >= params.length ? null : params[j]);
+        }
+      }
+      step(s);
+      Arrays.fill(changes, from, from + n, c.getChanges() == n ? 1 : SUCCESS_NO_INFO);
+      return true;
+    } catch (SQLException e) {
+      final int code = e.getErrorCode() & 0xff; // primary result code
+      if (code == ErrCodes.SQLITE_CONSTRAINT || code == ErrCodes.SQLITE_MISMATCH) { // caused by a row
+        return false;
+      }
+      throw tx.aborted(from - 1, changes, e); // busy, I/O error, disk full, timeout, ...
+    } finally {
+      if (s != null) {
+        s.close();
+      }
+    }
+  }
+
   @Override
   public void setCharacterStream(int parameterIndex, Reader reader, int length) throws SQLException {
     throw Util.unsupported("PreparedStatement.setCharacterStream");
@@ -28,11 +28,18 @@ public class Rows implements ResultSet {
   private Boolean wasNull;
   private RowIdImpl rowId;
   private Map<Integer, org.sqlite.Blob> blobByColIndex = Collections.emptyMap();
+  // not null when the rows are stepped ahead by the connection's thread (see Stmt.setFetchSize)
+  private Prefetcher prefetch;
+  private Object[] current; // prefetched row
 
   public Rows(Stmt s, boolean hasRow) throws SQLException {
     this.s = s;
     this.stmt = s.getStmt();
+    this.stmt.setTrusted(true); // column types are read once per row, only for the columns accessed
     this.row = hasRow ? 0 : -1; // Initialized at -1 when there is no result otherwise 0
+    if (hasRow) {
+      this.prefetch = s.prefetch(stmt);
+    }
   }
 
   private org.sqlite.Stmt getStmt() throws SQLException {
@@ -51,6 +58,14 @@ public class Rows implements ResultSet {
     if (row == -1) { // no result
       return false;
     }
+    if (prefetch != null) {
+      current = prefetch.next();
+      if (current == null) {
+        return false;
+      }
+      row++;
+      return true;
+    }
     if (row == 0) {
       row++;
       return true;
@@ -61,7 +76,7 @@ public class Rows implements ResultSet {
       return false;
     }
 
-    final boolean hasRow = stmt.step();
+    final boolean hasRow = s.step(stmt);
     if (hasRow) {
       row++;
     } else {
@@ -74,6 +89,23 @@ public class Rows implements ResultSet {
     return columnIndex - 1;
   }
 
+  // Value of the current prefetched row (the statement is owned by the connection's thread).
+  private Object prefetched(int columnIndex, int targetType) throws SQLException {
+    checkOpen();
+    if (current == null) {
+      throw new SQLException("no current row");
+    }
+    if (columnIndex < 1 || columnIndex > current.length) {
+      throw new SQLException(String.format("column index (%d) out of range [1, %d]", columnIndex, current.length));
+    }
+    final Object value = current[fixCol(columnIndex)];
+    if (targetType != ColTypes.SQLITE_NULL) {
+      stmt.checkTypeMismatch(fixCol(columnIndex), Prefetcher.typeOf(value), targetType);
+    }
+    wasNull = value == null;
+    return value;
+  }
+
   @Override
   public boolean next() throws SQLException {
     wasNull = null;
@@ -83,6 +115,11 @@ public class Rows implements ResultSet {
   @Override
   public void close() throws SQLException {
     //Util.trace("ResultSet.close");
+    if (prefetch != null) {
+      prefetch.cancel();
+      prefetch = null;
+      current = null;
+    }
     if (stmt != null) {
       if (!stmt.isClosed()) {
         if (s.isCloseOnCompletion()) {
@@ -109,9 +146,19 @@ public class Rows implements ResultSet {
   }
   @Override
   public String getString(int columnIndex) throws SQLException {
-    final String str = getStmt().getColumnText(fixCol(columnIndex));
-    wasNull = str == null;
-    return str;
+    if (prefetch != null) {
+      final Object value = prefetched(columnIndex, ColTypes.SQLITE_NULL);
+      if (value instanceof byte[]) {
+        return new String((byte[]) value, Util.UTF_8);
+      }
+      return value == null ? null : value.toString();
+    }
+    final org.sqlite.Stmt stmt = getStmt();
+    wasNull = stmt.columnType(fixCol(columnIndex)) == ColTypes.SQLITE_NULL;
+    if (wasNull) {
+      return null;
+    }
+    return stmt.columnText(fixCol(columnIndex));
   }
   @Override
   public boolean getBoolean(int columnIndex) throws SQLException {
@@ -127,28 +174,36 @@ public class Rows implements ResultSet {
   }
   @Override
   public int getInt(int columnIndex) throws SQLException {
+    if (prefetch != null) {
+      final Object value = prefetched(columnIndex, ColTypes.SQLITE_INTEGER);
+      return value == null ? 0 : ((Long) value).intValue();
+    }
     final org.sqlite.Stmt stmt = getStmt();
-    // After a type conversion, the value returned by sqlite3_column_type() is undefined.
-    final int sourceType = stmt.getColumnType(fixCol(columnIndex));
+    // Column types are cached before any conversion.
+    final int sourceType = stmt.columnType(fixCol(columnIndex));
     stmt.checkTypeMismatch(fixCol(columnIndex), sourceType, ColTypes.SQLITE_INTEGER);
     wasNull = sourceType == ColTypes.SQLITE_NULL;
     if (wasNull) {
       return 0;
     } else {
-      return stmt.getColumnInt(fixCol(columnIndex));
+      return stmt.columnInt(fixCol(columnIndex));
     }
   }
   @Override
   public long getLong(int columnIndex) throws SQLException {
+    if (prefetch != null) {
+      final Object value = prefetched(columnIndex, ColTypes.SQLITE_INTEGER);
+      return value == null ? 0 : (Long) value;
+    }
     final org.sqlite.Stmt stmt = getStmt();
-    // After a type conversion, the value returned by sqlite3_column_type() is undefined.
-    final int sourceType = stmt.getColumnType(fixCol(columnIndex));
+    // Column types are cached before any conversion.
+    final int sourceType = stmt.columnType(fixCol(columnIndex));
     stmt.checkTypeMismatch(fixCol(columnIndex), sourceType, ColTypes.SQLITE_INTEGER);
     wasNull = sourceType == ColTypes.SQLITE_NULL;
     if (wasNull) {
       return 0;
     } else {
-      return getStmt().getColumnLong(fixCol(columnIndex));
+      return stmt.columnLong(fixCol(columnIndex));
     }
   }
   @Override
@@ -157,15 +212,19 @@ public class Rows implements ResultSet {
   }
   @Override
   public double getDouble(int columnIndex) throws SQLException {
+    if (prefetch != null) {
+      final Object value = prefetched(columnIndex, ColTypes.SQLITE_FLOAT);
+      return value == null ? 0 : ((Number) value).doubleValue();
+    }
     final org.sqlite.Stmt stmt = getStmt();
-    // After a type conversion, the value returned by sqlite3_column_type() is undefined.
-    final int sourceType = stmt.getColumnType(fixCol(columnIndex));
+    // Column types are cached before any conversion.
+    final int sourceType = stmt.columnType(fixCol(columnIndex));
     stmt.checkTypeMismatch(fixCol(columnIndex), sourceType, ColTypes.SQLITE_FLOAT);
     wasNull = sourceType == ColTypes.SQLITE_NULL;
     if (wasNull) {
       return 0;
     } else {
-      return stmt.getColumnDouble(fixCol(columnIndex));
+      return stmt.columnDouble(fixCol(columnIndex));
     }
   }
   @Override
@@ -175,9 +234,20 @@ public class Rows implements ResultSet {
   }
   @Override
   public byte[] getBytes(int columnIndex) throws SQLException {
-    final byte[] blob = getStmt().getColumnBlob(fixCol(columnIndex));
-    wasNull = blob == null;
-    return blob;
+    if (prefetch != null) {
+      final Object value = prefetched(columnIndex, ColTypes.SQLITE_NULL);
+      if (value == null || value instanceof byte[]) {
+        return (byte[]) value;
+      }
+      return value.toString().getBytes(Util.UTF_8);
+    }
+    final org.sqlite.Stmt stmt = getStmt();
+    wasNull = stmt.columnType(fixCol(columnIndex)) == ColTypes.SQLITE_NULL;
+    if (wasNull) {
+      return null;
+    }
+    final byte[] blob = stmt.columnBlob(fixCol(columnIndex));
+    return blob == null ? new byte[0] : blob; // zero-length BLOB
   }
   @Override
   public Date getDate(int columnIndex) throws SQLException {
@@ -301,9 +371,11 @@ public class Rows implements ResultSet {
   }
   @Override
   public Object getObject(int columnIndex) throws SQLException {
+    if (prefetch != null) {
+      return prefetched(columnIndex, ColTypes.SQLITE_NULL);
+    }
     final org.sqlite.Stmt stmt = getStmt();
-    // After a type conversion, the value returned by sqlite3_column_type() is undefined.
-    final int sourceType = stmt.getColumnType(fixCol(columnIndex));
+    final int sourceType = stmt.columnType(fixCol(columnIndex));
     switch (sourceType) {
       case ColTypes.SQLITE_TEXT:
         return getString(columnIndex);
@@ -436,7 +508,7 @@ public class Rows implements ResultSet {
   @Override
   public int getFetchSize() throws SQLException {
     checkOpen();
-    return 1;
+    return prefetch == null ? 1 : prefetch.getFetchSize();
   }
   @Override
   public int getType() throws SQLException {
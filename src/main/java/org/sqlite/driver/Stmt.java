@@ -8,7 +8,9 @@
  */
 package org.sqlite.driver;
 
+import org.sqlite.BindBatch;
 import org.sqlite.ErrCodes;
+import org.sqlite.SQLiteException;
 import org.sqlite.StmtException;
 
 import java.sql.*;
@@ -19,7 +21,6 @@ import java.util.Map;
 
 // There is no "not prepared" statement in SQLite!
 public class Stmt implements Statement {
-  //private static final ExecutorService EXECUTOR_SERVICE = Executors.newCachedThreadPool();
   private Conn c;
   private final boolean prepared;
   private org.sqlite.Stmt stmt;
@@ -30,16 +31,30 @@ public class Stmt implements Statement {
   private int maxRows;
   private int status; // 0: not a select, 1: select with row, 2: select without row
   private List<String> batch; // sql queries (see addBatch)
-  //private int queryTimeout;
+  private int queryTimeout; // seconds
+  // true when the native statement is returned to the connection's statement cache on close
+  private boolean poolable;
+  private volatile boolean stepping;
+  // network timeout armed for each step, cancelled on close (see Conn#beginStep)
+  TimerWheel.Timeout timeout;
+  // rows buffered ahead by the connection's thread when > 1 (see Rows)
+  private int fetchSize;
+  // active prefetching result set
+  private Prefetcher prefetcher;
+  // rows per transaction when a batch is executed in auto-commit mode (0: one transaction per row)
+  private int batchCommitSize;
 
   Stmt(Conn c) {
     this.c = c;
     this.prepared = false;
+    this.batchCommitSize = c.getBatchCommitSize();
   }
   Stmt(Conn c, org.sqlite.Stmt stmt) {
     this.c = c;
     this.stmt = stmt;
     this.prepared = true;
+    this.poolable = true;
+    this.batchCommitSize = c.getBatchCommitSize();
   }
 
   org.sqlite.Stmt getStmt() throws SQLException {
@@ -50,6 +65,43 @@ public class Stmt implements Statement {
     checkOpen();
     return c.getConn();
   }
+  java.util.concurrent.ExecutorService getExecutor() throws SQLException {
+    checkOpen();
+    return c.getExecutor();
+  }
+  /**
+   * @param rows in auto-commit mode, {@link #executeBatch()} is run in transactions committed every <code>rows</code> rows
+   *             (0: one transaction per row).
+   *             A failed row is rolled back alone (SQLite statement journal) unless the whole transaction is aborted by SQLite
+   *             (then the rows of the current chunk are reported as failed).
+   */
+  public void setBatchCommitSize(int rows) throws SQLException {
+    if (rows < 0) throw Util.error("batch commit size must be >= 0");
+    checkOpen();
+    this.batchCommitSize = rows;
+  }
+  public int getBatchCommitSize() {
+    return batchCommitSize;
+  }
+  BatchTx beginBatch() throws SQLException {
+    return new BatchTx(getConn(), batchCommitSize);
+  }
+
+  Prefetcher prefetch(org.sqlite.Stmt stmt) throws SQLException {
+    stopPrefetch();
+    if (fetchSize > 1) {
+      prefetcher = new Prefetcher(this, stmt, fetchSize);
+    }
+    return prefetcher;
+  }
+  // The statement must be released by the connection's thread before being reused or closed.
+  void stopPrefetch() {
+    final Prefetcher p = prefetcher;
+    if (p != null) {
+      prefetcher = null;
+      p.cancel();
+    }
+  }
 
   void checkOpen() throws SQLException {
     if (stmt == null) {
@@ -98,8 +150,9 @@ public class Stmt implements Statement {
       throw new SQLException("method not supported by PreparedStatement");
     } else {
       close();
-      stmt = c.getConn().prepare(sql);
-      final boolean hasRow = stmt.step();
+      stmt = c.getConn().prepare(sql, poolable);
+      c.opened(this);
+      final boolean hasRow = step(stmt);
       if (!hasRow && stmt.getColumnCount() == 0) {
         throw new StmtException(stmt, "query does not return a ResultSet", ErrCodes.WRAPPER_SPECIFIC);
       }
@@ -113,8 +166,9 @@ public class Stmt implements Statement {
     } else {
       close();
       try {
-        stmt = c.getConn().prepare(sql);
-        if (stmt.step() || stmt.getColumnCount() != 0) {
+        stmt = c.getConn().prepare(sql, poolable);
+        c.opened(this);
+        if (step(stmt) || stmt.getColumnCount() != 0) {
           throw new StmtException(stmt, "statement returns a ResultSet", ErrCodes.WRAPPER_SPECIFIC);
         }
         return getConn().getChanges();
@@ -126,8 +180,14 @@ public class Stmt implements Statement {
   @Override
   public void close() throws SQLException {
     //Util.trace("Statement.close");
+    stopPrefetch();
+    if (timeout != null) {
+      timeout.cancel();
+      timeout = null;
+    }
     if (stmt != null) {
-      stmt.closeAndCheck();
+      c.closed(this);
+      stmt.closeAndCheck(!poolable);
       if (colIndexByName != null) colIndexByName.clear();
       stmt = null;
       status = 0;
@@ -164,18 +224,23 @@ public class Stmt implements Statement {
   }
   @Override
   public int getQueryTimeout() throws SQLException { // Used by Hibernate
-    checkOpen();
-    return 0; // TODO ExecutorService#invokeAny(..., queryTimeout, TimeUnit.SECONDS);
+    if (prepared) {
+      checkOpen();
+    }
+    return queryTimeout;
   }
+  // Enforced by the connection's progress handler (see org.sqlite.Stmt#setQueryTimeout)
   @Override
   public void setQueryTimeout(int seconds) throws SQLException {
     if (seconds < 0) throw Util.error("query timeout must be >= 0");
-    //checkOpen();
-    Util.trace("Statement.setQueryTimeout");
+    this.queryTimeout = seconds;
   }
+  // Only the statement being stepped is interrupted (sqlite3_interrupt applies to the whole connection).
   @Override
   public void cancel() throws SQLException {
-    getConn().interrupt();
+    if (stepping) {
+      getConn().interrupt();
+    }
   }
   @Override
   public SQLWarning getWarnings() throws SQLException {
@@ -198,12 +263,14 @@ public class Stmt implements Statement {
     } else {
       close();
       // TODO multiple statements...
-      stmt = c.getConn().prepare(sql);
+      stmt = c.getConn().prepare(sql, poolable);
+      c.opened(this);
       return exec();
     }
   }
   protected boolean exec() throws SQLException {
-    if (stmt.step()) {
+    stopPrefetch();
+    if (step(stmt)) {
       status = 1;
     } else if (stmt.getColumnCount() != 0) {
       status = 2;
@@ -212,25 +279,53 @@ public class Stmt implements Statement {
     }
     return status != 0;
   }
-  /*protected boolean step(final org.sqlite.Stmt stmt) throws SQLException {
-    if (queryTimeout == 0) {
+  boolean step(org.sqlite.Stmt stmt) throws SQLException {
+    final Conn c = this.c;
+    if (c == null) {
+      throw new SQLException("Statement closed");
+    }
+    stmt.setQueryTimeout(queryTimeout * 1000);
+    final TimerWheel.Timeout timeout = c.beginStep(this);
+    stepping = true;
+    try {
       return stmt.step();
+    } catch (StmtException e) {
+      throw timedOut(stmt, timeout, e);
+    } finally {
+      stepping = false;
+      c.endStep(timeout);
     }
-    // TODO Validate usage of stmt in a different thread:
+  }
+  // Binds and executes one row of a columnar batch, with the same timeouts, cancellation and abort handling as step.
+  int exec(org.sqlite.Stmt stmt, BindBatch batch, int row) throws SQLException {
+    final Conn c = this.c;
+    if (c == null) {
+      throw new SQLException("Statement closed");
+    }
+    stmt.setQueryTimeout(queryTimeout * 1000);
+    final TimerWheel.Timeout timeout = c.beginStep(this);
+    stepping = true;
     try {
-      return EXECUTOR_SERVICE.invokeAny(Collections.singleton(new Callable<Boolean>() {
-        @Override
-        public Boolean call() throws Exception {
-          return stmt.step();
-        }
-      }), queryTimeout, TimeUnit.SECONDS);
-    } catch (InterruptedException | ExecutionException e) {
-      throw new SQLException(e);
-    } catch (TimeoutException e) {
-      getConn().interrupt();
-      throw new SQLTimeoutException(e);
+      return stmt.exec(batch, row);
+    } catch (SQLiteException e) {
+      throw timedOut(stmt, timeout, e);
+    } finally {
+      stepping = false;
+      c.endStep(timeout);
     }
-  }*/
+  }
+  // @return true when the statement has timed out or has been cancelled, or when the connection is closed or aborted
+  boolean isInterrupted(SQLException e) throws SQLException {
+    final Conn c = this.c;
+    return e instanceof SQLTimeoutException || (e.getErrorCode() & 0xff) == ErrCodes.SQLITE_INTERRUPT ||
+        c == null || c.isClosed();
+  }
+  private static SQLException timedOut(org.sqlite.Stmt stmt, TimerWheel.Timeout timeout, SQLiteException e) {
+    if (stmt.isTimedOut() || timeout != null && timeout.isExpired()) {
+      return new SQLTimeoutException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+    }
+    return e;
+  }
   @Override
   public ResultSet getResultSet() throws SQLException {
     if (status != 0) {
@@ -267,21 +362,20 @@ public class Stmt implements Statement {
     checkOpen();
     return ResultSet.FETCH_FORWARD;
   }
+  /**
+   * @param rows when greater than 1, result sets are prefetched: the connection's thread steps ahead
+   *             and buffers up to <code>rows</code> rows while the application processes the current one
+   */
   @Override
   public void setFetchSize(int rows) throws SQLException {
     if (rows < 0) throw Util.error("fetch size must be >= 0");
     checkOpen();
-    if (rows == 0) {
-      return;
-    }
-    if (rows != 1) {
-      //Util.trace(String.format("SQLite does not support setting fetch size to %d", rows));
-    }
+    this.fetchSize = rows;
   }
   @Override
   public int getFetchSize() throws SQLException {
     checkOpen();
-    return 1;
+    return fetchSize;
   }
   @Override
   public int getResultSetConcurrency() throws SQLException {
@@ -319,17 +413,24 @@ public class Stmt implements Statement {
     final int size = batch.size();
     Exception cause = null;
     final int[] changes = new int[size];
-    for (int i = 0; i < size; ++i) {
-      try {
-        changes[i] = executeUpdate(batch.get(i));
-      } catch (SQLException e) {
-        if (cause == null) {
-          cause = e;
+    final BatchTx tx = beginBatch();
+    try {
+      for (int i = 0; i < size; ++i) {
+        try {
+          changes[i] = executeUpdate(batch.get(i));
+        } catch (SQLException e) {
+          if (cause == null) {
+            cause = e;
+          }
+          changes[i] = EXECUTE_FAILED;
         }
-        changes[i] = EXECUTE_FAILED;
+        tx.executed(i, changes);
       }
+      tx.end(changes);
+    } finally {
+      tx.abort();
+      clearBatch();
     }
-    clearBatch();
     if (cause != null) {
       throw new BatchUpdateException("batch failed", changes, cause);
     }
@@ -390,15 +491,20 @@ public class Stmt implements Statement {
   public boolean isClosed() throws SQLException {
     return stmt == null;
   }
+  // Statement is not poolable by default, PreparedStatement is.
   @Override
   public void setPoolable(boolean poolable) throws SQLException {
-    checkOpen();
-    throw Util.unsupported("*Statement.setPoolable"); // TODO
+    if (prepared) {
+      checkOpen();
+    }
+    this.poolable = poolable;
   }
   @Override
   public boolean isPoolable() throws SQLException {
-    checkOpen();
-    throw Util.unsupported("*Statement.isPoolable"); // TODO
+    if (prepared) {
+      checkOpen();
+    }
+    return poolable;
   }
   @Override
   public void closeOnCompletion() throws SQLException {
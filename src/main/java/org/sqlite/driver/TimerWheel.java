@@ -0,0 +1,270 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite.driver;
+
+import org.sqlite.ConnException;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timer wheel shared by all connections: one daemon thread interrupts the connections
+ * whose in-flight step has not completed before its deadline.
+ * A timeout is created once per statement and armed for each step: re-arming only moves its deadline,
+ * the timeout is (re)inserted in the wheel when it is not there anymore (the wheel drops the timeouts found disarmed).
+ * Cancelled timeouts are unlinked at the next tick.
+ * The thread parks when there is no pending timeout.
+ */
+final class TimerWheel implements Runnable {
+  static final TimerWheel INSTANCE = new TimerWheel(TimeUnit.MILLISECONDS.toNanos(10), 512);
+
+  static final class Timeout {
+    private final TimerWheel wheel;
+    private final org.sqlite.Conn c;
+    // guarded by this
+    private long deadline;
+    private boolean armed; // a step is in progress
+    private boolean scheduled; // in the wheel (or about to be transferred)
+    private long scheduledDeadline;
+    private boolean cancelled;
+    private volatile boolean expired;
+    // wheel thread only
+    private long rounds; // remaining turns of the wheel
+    private int bucket = -1;
+    private Timeout prev, next;
+
+    private Timeout(TimerWheel wheel, org.sqlite.Conn c) {
+      this.wheel = wheel;
+      this.c = c;
+    }
+
+    /**
+     * Called before a step: the connection is interrupted if the step is not over in time.
+     * @param delay in milliseconds
+     */
+    void arm(long delay) {
+      final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+      synchronized (this) {
+        this.deadline = deadline;
+        armed = true;
+        expired = false;
+        if (scheduled && deadline - scheduledDeadline >= 0) {
+          return; // moved later: rescheduled by the wheel thread when its bucket is visited
+        }
+        scheduled = true;
+        scheduledDeadline = deadline;
+      }
+      wheel.add(this, deadline);
+    }
+    /**
+     * Called after a step. Waits for an interruption in progress so that it cannot hit the next statement.
+     */
+    synchronized void disarm() {
+      armed = false;
+    }
+    /**
+     * The timeout cannot be armed anymore and is removed from the wheel.
+     */
+    void cancel() {
+      synchronized (this) {
+        armed = false;
+        if (cancelled) {
+          return;
+        }
+        cancelled = true;
+        if (!scheduled) {
+          return;
+        }
+      }
+      wheel.cancellations.add(this);
+    }
+    /**
+     * @return true if the connection has been interrupted because the deadline of the last step passed
+     */
+    boolean isExpired() {
+      return expired;
+    }
+
+    // wheel thread
+    private synchronized boolean isScheduled() {
+      return scheduled && !cancelled;
+    }
+    private synchronized long scheduledDeadline() {
+      return scheduledDeadline;
+    }
+    // @return true when the deadline has been moved later (to be rescheduled)
+    private synchronized boolean visit(long now) {
+      if (cancelled || !armed) {
+        scheduled = false;
+        return false;
+      }
+      if (deadline - now > 0) {
+        scheduledDeadline = deadline;
+        return true;
+      }
+      // the step is still in progress: checked under the lock taken by disarm
+      expired = true;
+      scheduled = false;
+      try {
+        c.interrupt();
+      } catch (ConnException e) { // closed
+        // ignored
+      }
+      return false;
+    }
+  }
+
+  private final long tickNanos;
+  private final Timeout[] buckets;
+  private final int mask;
+  private final ConcurrentLinkedQueue<Timeout> pending = new ConcurrentLinkedQueue<Timeout>();
+  private final ConcurrentLinkedQueue<Timeout> cancellations = new ConcurrentLinkedQueue<Timeout>();
+  private final long startTime = System.nanoTime();
+  private volatile Thread worker;
+  // when the worker is parked: end of its park (see add)
+  private volatile boolean idle;
+  private volatile long parkedUntil;
+
+  // wheel thread only
+  private long tick;
+  private int size;
+
+  private TimerWheel(long tickNanos, int wheelSize) {
+    this.tickNanos = tickNanos;
+    this.buckets = new Timeout[wheelSize]; // must be a power of two
+    this.mask = wheelSize - 1;
+  }
+
+  /**
+   * @param c connection interrupted when the timeout expires
+   * @return timeout to be armed for each step and cancelled when the statement is closed
+   */
+  Timeout newTimeout(org.sqlite.Conn c) {
+    return new Timeout(this, c);
+  }
+
+  private void add(Timeout timeout, long deadline) {
+    pending.add(timeout);
+    final Thread thread = worker;
+    if (thread == null) {
+      start();
+    } else if (idle || deadline - parkedUntil < 0) { // otherwise transferred when the worker wakes up
+      LockSupport.unpark(thread);
+    }
+  }
+
+  private synchronized void start() {
+    if (worker != null) {
+      return;
+    }
+    final Thread thread = new Thread(this, "sqlite-jna-timer");
+    thread.setDaemon(true);
+    worker = thread;
+    thread.start();
+  }
+
+  @Override
+  public void run() {
+    tick = (System.nanoTime() - startTime) / tickNanos;
+    while (true) {
+      transferPending();
+      removeCancelled();
+      if (size == 0) {
+        idle = true; // set before checking the queue (see add)
+        if (pending.isEmpty()) {
+          LockSupport.park(this);
+          tick = (System.nanoTime() - startTime) / tickNanos;
+        }
+        idle = false;
+        continue;
+      }
+      // the bucket of the current tick is visited once the tick is over
+      final long now = System.nanoTime();
+      final long wakeUp = startTime + (tick + 1) * tickNanos;
+      if (wakeUp - now > 0) {
+        parkedUntil = wakeUp;
+        LockSupport.parkNanos(this, wakeUp - now); // may be woken up early by add
+        continue;
+      }
+      expireBucket(now);
+      tick++;
+    }
+  }
+
+  private void transferPending() {
+    Timeout timeout;
+    while ((timeout = pending.poll()) != null) {
+      if (timeout.bucket >= 0) { // armed again with an earlier deadline
+        unlink(timeout);
+      }
+      if (timeout.isScheduled()) { // not dropped or cancelled meanwhile
+        insert(timeout, timeout.scheduledDeadline());
+      }
+    }
+  }
+
+  private void removeCancelled() {
+    Timeout timeout;
+    while ((timeout = cancellations.poll()) != null) {
+      if (timeout.bucket >= 0) {
+        unlink(timeout);
+      }
+    }
+  }
+
+  private void insert(Timeout timeout, long deadline) {
+    long ticks = (deadline - startTime + tickNanos - 1) / tickNanos;
+    if (ticks < tick) {
+      ticks = tick; // already late: expired at the current tick
+    }
+    timeout.rounds = (ticks - tick) / buckets.length;
+    final int index = (int) (ticks & mask);
+    timeout.bucket = index;
+    timeout.prev = null;
+    timeout.next = buckets[index];
+    if (timeout.next != null) {
+      timeout.next.prev = timeout;
+    }
+    buckets[index] = timeout;
+    size++;
+  }
+
+  private void unlink(Timeout timeout) {
+    if (timeout.prev == null) {
+      buckets[timeout.bucket] = timeout.next;
+    } else {
+      timeout.prev.next = timeout.next;
+    }
+    if (timeout.next != null) {
+      timeout.next.prev = timeout.prev;
+    }
+    timeout.bucket = -1;
+    timeout.prev = null;
+    timeout.next = null;
+    size--;
+  }
+
+  private void expireBucket(long now) {
+    Timeout timeout = buckets[(int) (tick & mask)];
+    while (timeout != null) {
+      final Timeout next = timeout.next;
+      if (timeout.rounds > 0) {
+        timeout.rounds--;
+      } else {
+        final boolean reschedule = timeout.visit(now);
+        unlink(timeout);
+        if (reschedule) {
+          insert(timeout, timeout.scheduledDeadline());
+        }
+      }
+      timeout = next;
+    }
+  }
+}
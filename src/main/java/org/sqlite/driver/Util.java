@@ -9,10 +9,12 @@
 package org.sqlite.driver;
 
 import java.io.PrintStream;
+import java.nio.charset.Charset;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 
 class Util {
+  static final Charset UTF_8 = Charset.forName("UTF-8");
   private static PrintStream out;
 
   static {
@@ -0,0 +1,371 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite.driver;
+
+import org.sqlite.OpenFlags;
+import org.sqlite.StmtStats;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.ConnectionPoolDataSource;
+import javax.sql.DataSource;
+import javax.sql.PooledConnection;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Pool over a database in WAL mode: one writer connection and N read-only connections.
+ * <ul>
+ *   <li>{@link #getConnection()} hands out the writer (writes are serialized: callers wait until it is released),</li>
+ *   <li>{@link #getReadOnlyConnection()} hands out one of the readers (opened with SQLITE_OPEN_READONLY).</li>
+ * </ul>
+ * Plain JDBC clients (only calling {@link #getConnection()}) never reach the readers:
+ * {@link Connection#setReadOnly(boolean)} does not switch to a reader, it only makes the writer query only.
+ * Closing a connection returns it to the pool (a pending transaction is rolled back).
+ * Waiting for a connection is bounded by the login timeout (0 means wait forever).
+ * Connections are opened lazily by the first checkout.
+ */
+public class WalDataSource implements DataSource, ConnectionPoolDataSource, WalDataSourceMBean {
+  private static final int WRITER_FLAGS = OpenFlags.SQLITE_OPEN_READWRITE | OpenFlags.SQLITE_OPEN_CREATE |
+      OpenFlags.SQLITE_OPEN_FULLMUTEX | OpenFlags.SQLITE_OPEN_URI;
+  private static final int READER_FLAGS = OpenFlags.SQLITE_OPEN_READONLY | OpenFlags.SQLITE_OPEN_FULLMUTEX |
+      OpenFlags.SQLITE_OPEN_URI;
+
+  private String url;
+  private int readers = Runtime.getRuntime().availableProcessors();
+  private Properties info = new Properties();
+  private ConnConfig config;
+  private int loginTimeout;
+  private PrintWriter logWriter;
+
+  private BlockingQueue<PooledConn> idleWriter;
+  private BlockingQueue<PooledConn> idleReaders;
+  private final List<PooledConn> all = new ArrayList<PooledConn>();
+  private boolean closed;
+  // registered when the jmx property is set
+  private ObjectName mbeanName;
+
+  private final ConnectionEventListener listener = new ConnectionEventListener() {
+    @Override
+    public void connectionClosed(ConnectionEvent event) {
+      release((PooledConn) event.getSource(), false);
+    }
+    @Override
+    public void connectionErrorOccurred(ConnectionEvent event) {
+      release((PooledConn) event.getSource(), true);
+    }
+  };
+
+  public WalDataSource() {
+  }
+  /**
+   * @param url     jdbc:sqlite:{file name}
+   * @param readers number of read-only connections
+   */
+  public WalDataSource(String url, int readers) {
+    this.url = url;
+    this.readers = readers;
+  }
+
+  @Override
+  public String getUrl() {
+    return url;
+  }
+  public void setUrl(String url) {
+    this.url = url;
+  }
+  @Override
+  public int getReaders() {
+    return readers;
+  }
+  public void setReaders(int readers) {
+    this.readers = readers;
+  }
+  /**
+   * @param info connection properties (see {@link ConnConfig})
+   */
+  public void setProperties(Properties info) {
+    this.info = info == null ? new Properties() : info;
+  }
+
+  /**
+   * @return statement status counters aggregated over all the pooled connections
+   * or null when the stmt_stats property is not set (or when the pool is not initialized)
+   */
+  public synchronized StmtStats getStmtStats() {
+    return config == null ? null : config.getStmtStats();
+  }
+
+  /**
+   * @return the writer connection (waits until it is released by its current user),
+   * even when it is then marked read-only (use {@link #getReadOnlyConnection()} to reach the readers)
+   */
+  @Override
+  public Connection getConnection() throws SQLException {
+    init();
+    return checkout(idleWriter);
+  }
+  /**
+   * SQLite has no authentication: credentials are ignored.
+   */
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return getConnection();
+  }
+  /**
+   * @return a read-only connection (or the writer when there is no reader)
+   */
+  public Connection getReadOnlyConnection() throws SQLException {
+    init();
+    return checkout(idleReaders == null ? idleWriter : idleReaders);
+  }
+
+  private Connection checkout(BlockingQueue<PooledConn> idle) throws SQLException {
+    final PooledConn pc;
+    try {
+      if (loginTimeout > 0) {
+        pc = idle.poll(loginTimeout, TimeUnit.SECONDS);
+      } else {
+        pc = idle.take();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("interrupted while waiting for a connection", e);
+    }
+    if (pc == null) {
+      throw new SQLTimeoutException(String.format("no connection available after %d s", loginTimeout));
+    }
+    try {
+      return pc.getConnection();
+    } catch (SQLException e) {
+      release(pc, true);
+      throw e;
+    }
+  }
+
+  private synchronized void init() throws SQLException {
+    if (closed) {
+      throw new SQLException("DataSource closed");
+    }
+    if (idleWriter != null) {
+      return;
+    }
+    if (url == null || !url.startsWith(JDBC.PREFIX)) {
+      throw new SQLException(String.format("invalid url: '%s'", url));
+    }
+    config = ConnConfig.parse(url.substring(JDBC.PREFIX.length()), info);
+    final BlockingQueue<PooledConn> writer = new ArrayBlockingQueue<PooledConn>(1);
+    final BlockingQueue<PooledConn> readers = this.readers > 0 ? new ArrayBlockingQueue<PooledConn>(this.readers) : null;
+    try {
+      writer.add(open(false)); // the writer must be opened first to switch the database to WAL mode
+      for (int i = 0; i < this.readers; i++) {
+        readers.add(open(true));
+      }
+    } catch (SQLException e) {
+      closeAll();
+      throw e;
+    }
+    idleWriter = writer;
+    idleReaders = readers;
+    if (config.isJmx()) {
+      registerMBean();
+    }
+  }
+
+  private void registerMBean() {
+    try {
+      final ObjectName name = new ObjectName("org.sqlite:type=Pool,name=" + ObjectName.quote(url));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+      mbeanName = name;
+    } catch (JMException e) { // e.g. another pool on the same url
+      Util.trace(String.format("cannot register pool MBean for '%s': %s", url, e.getMessage()));
+    }
+  }
+
+  @Override
+  public synchronized int getOpenConnections() {
+    return all.size();
+  }
+  @Override
+  public synchronized int getIdleReaders() {
+    final BlockingQueue<PooledConn> idle = idleReaders;
+    return idle == null ? 0 : idle.size();
+  }
+  @Override
+  public synchronized boolean isWriterIdle() {
+    final BlockingQueue<PooledConn> idle = idleWriter;
+    return idle != null && !idle.isEmpty();
+  }
+  @Override
+  public synchronized boolean isClosed() {
+    return closed;
+  }
+
+  private PooledConn open(boolean readOnly) throws SQLException {
+    final org.sqlite.Conn c = JDBC.open(config, readOnly ? READER_FLAGS : WRITER_FLAGS, !readOnly);
+    final PooledConn pc = new PooledConn(c, info, readOnly, config);
+    pc.addConnectionEventListener(listener);
+    all.add(pc);
+    return pc;
+  }
+
+  static void enableWal(org.sqlite.Conn c) throws SQLException {
+    final org.sqlite.Stmt s = c.prepare("PRAGMA journal_mode=WAL", false);
+    try {
+      final String mode = s.step() ? s.getColumnText(0) : null;
+      if (!"wal".equalsIgnoreCase(mode)) {
+        throw new SQLException(String.format("cannot switch '%s' to WAL mode (journal mode: %s)", c.getFilename(), mode));
+      }
+    } finally {
+      s.close();
+    }
+  }
+
+  private synchronized void release(PooledConn pc, boolean broken) {
+    if (closed || broken) {
+      all.remove(pc);
+      try {
+        pc.close();
+      } catch (SQLException e) {
+        log("error while closing a broken connection", e);
+      }
+      if (closed) {
+        return;
+      }
+      try { // replace it
+        queue(open(pc.isReadOnly()));
+      } catch (SQLException e) {
+        log("error while reopening a connection", e);
+      }
+      return;
+    }
+    queue(pc);
+  }
+  private void queue(PooledConn pc) {
+    if (pc.isReadOnly()) {
+      idleReaders.add(pc);
+    } else {
+      idleWriter.add(pc);
+    }
+  }
+
+  /**
+   * Close all physical connections (the ones in use are closed when released).
+   */
+  public synchronized void close() throws SQLException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (mbeanName != null) {
+      try {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+      } catch (JMException e) {
+        Util.trace(String.format("cannot unregister MBean '%s': %s", mbeanName, e.getMessage()));
+      }
+      mbeanName = null;
+    }
+    final List<PooledConn> idle = new ArrayList<PooledConn>();
+    if (idleWriter != null) idleWriter.drainTo(idle);
+    if (idleReaders != null) idleReaders.drainTo(idle);
+    all.removeAll(idle);
+    SQLException error = null;
+    for (PooledConn pc : idle) {
+      try {
+        pc.close();
+      } catch (SQLException e) {
+        error = e;
+      }
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
+  private void closeAll() {
+    for (PooledConn pc : all) {
+      try {
+        pc.close();
+      } catch (SQLException e) {
+        log("error while closing a connection", e);
+      }
+    }
+    all.clear();
+  }
+
+  private void log(String msg, SQLException e) {
+    final PrintWriter out = logWriter;
+    if (out == null) {
+      Util.trace(msg + ": " + e.getMessage());
+    } else {
+      out.println(msg);
+      e.printStackTrace(out);
+      out.flush();
+    }
+  }
+
+  /**
+   * @return a new physical connection to the database (in WAL mode), not managed by this pool
+   */
+  @Override
+  public PooledConnection getPooledConnection() throws SQLException {
+    if (url == null || !url.startsWith(JDBC.PREFIX)) {
+      throw new SQLException(String.format("invalid url: '%s'", url));
+    }
+    final ConnConfig config = ConnConfig.parse(url.substring(JDBC.PREFIX.length()), info);
+    final org.sqlite.Conn c = JDBC.open(config, WRITER_FLAGS, true);
+    return new PooledConn(c, info, false, config);
+  }
+  @Override
+  public PooledConnection getPooledConnection(String user, String password) throws SQLException {
+    return getPooledConnection();
+  }
+
+  @Override
+  public PrintWriter getLogWriter() throws SQLException {
+    return logWriter;
+  }
+  @Override
+  public void setLogWriter(PrintWriter out) throws SQLException {
+    this.logWriter = out;
+  }
+  @Override
+  public void setLoginTimeout(int seconds) throws SQLException {
+    if (seconds < 0) throw Util.error("login timeout must be >= 0");
+    this.loginTimeout = seconds;
+  }
+  @Override
+  public int getLoginTimeout() throws SQLException {
+    return loginTimeout;
+  }
+  @Override
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    throw Util.unsupported("DataSource.getParentLogger");
+  }
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException {
+    throw Util.error("not a wrapper");
+  }
+  @Override
+  public boolean isWrapperFor(Class<?> iface) throws SQLException {
+    return false;
+  }
+}
@@ -0,0 +1,28 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite.driver;
+
+import java.sql.SQLException;
+
+/**
+ * Management interface of a {@link WalDataSource}, registered as "org.sqlite:type=Pool,name=<url>"
+ * when the jmx property is set (the database itself is monitored by {@link DbMonitor}).
+ */
+public interface WalDataSourceMBean {
+  String getUrl();
+  /** maximum number of read-only connections */
+  int getReaders();
+  /** number of physical connections opened */
+  int getOpenConnections();
+  int getIdleReaders();
+  boolean isWriterIdle();
+  /** in seconds */
+  int getLoginTimeout() throws SQLException;
+  boolean isClosed();
+}
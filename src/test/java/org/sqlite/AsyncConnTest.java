@@ -0,0 +1,150 @@
+package org.sqlite;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class AsyncConnTest {
+  private static final RowMapper<String> TEXT = new RowMapper<String>() {
+    @Override
+    public String map(Stmt s) throws SQLiteException {
+      return s.getColumnText(0);
+    }
+  };
+
+  @Test
+  public void pipeline() throws Exception {
+    final AsyncConn ac = new AsyncConn(ConnTest.open());
+    // submitted without waiting: run in order by the connection's thread
+    ac.execute("CREATE TABLE test (data TEXT)");
+    ac.prepare("INSERT INTO test VALUES (?)");
+    final AsyncConn.Result<Integer> inserted = ac.execute("INSERT INTO test VALUES (?)", "a");
+    final AsyncConn.Result<List<String>> rows = ac.query("SELECT data FROM test ORDER BY 1", TEXT);
+
+    final CountDownLatch latch = new CountDownLatch(1);
+    final AtomicReference<List<String>> result = new AtomicReference<List<String>>();
+    rows.whenComplete(new AsyncConn.Callback<List<String>>() {
+      @Override
+      public void onSuccess(List<String> r) {
+        result.set(r);
+        latch.countDown();
+      }
+      @Override
+      public void onFailure(Throwable t) {
+        latch.countDown();
+      }
+    });
+    Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+    Assert.assertEquals(Arrays.asList("a"), result.get());
+    Assert.assertEquals(1, (int) inserted.get());
+
+    // rolled back
+    final AsyncConn.Result<Void> failed = ac.transaction(new AsyncConn.Work<Void>() {
+      @Override
+      public Void run(Conn c) throws SQLiteException {
+        c.exec("INSERT INTO test VALUES ('b')");
+        c.exec("INSERT INTO nonexistent_table VALUES ('c')");
+        return null;
+      }
+    });
+    try {
+      failed.get();
+      Assert.fail("transaction error expected");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof ConnException);
+    }
+    // committed
+    ac.transaction(new AsyncConn.Work<Void>() {
+      @Override
+      public Void run(Conn c) throws SQLiteException {
+        c.exec("INSERT INTO test VALUES ('d')");
+        return null;
+      }
+    }).get();
+    Assert.assertEquals(Arrays.asList("a", "d"), ac.query("SELECT data FROM test ORDER BY 1", TEXT).get());
+    ac.close();
+
+    try {
+      ac.execute("SELECT 1").get();
+      Assert.fail("connection closed");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof ConnException);
+    }
+  }
+
+  @Test
+  public void commitFailure() throws Exception {
+    final AsyncConn ac = new AsyncConn(ConnTest.open());
+    ac.execute("PRAGMA foreign_keys=ON");
+    ac.execute("CREATE TABLE parent (id INTEGER PRIMARY KEY)");
+    ac.execute("CREATE TABLE child (pid INTEGER REFERENCES parent(id) DEFERRABLE INITIALLY DEFERRED)");
+    // deferred constraint: the COMMIT fails and the transaction is left open
+    final AsyncConn.Result<Void> failed = ac.transaction(new AsyncConn.Work<Void>() {
+      @Override
+      public Void run(Conn c) throws SQLiteException {
+        c.exec("INSERT INTO child VALUES (1)");
+        return null;
+      }
+    });
+    try {
+      failed.get();
+      Assert.fail("commit error expected");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof ConnException);
+    }
+    // not only SQLite/runtime exceptions
+    final AsyncConn.Result<Void> error = ac.transaction(new AsyncConn.Work<Void>() {
+      @Override
+      public Void run(Conn c) throws SQLiteException {
+        c.exec("INSERT INTO child VALUES (2)");
+        throw new AssertionError("boom");
+      }
+    });
+    try {
+      error.get();
+      Assert.fail("work error expected");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof AssertionError);
+    }
+    // both rolled back
+    Assert.assertEquals(Arrays.asList("0"), ac.query("SELECT count(*) FROM child", TEXT).get());
+    ac.close();
+  }
+
+  @Test
+  public void closeWhileRunning() throws Exception {
+    final Conn c = ConnTest.open();
+    final AsyncConn ac = new AsyncConn(c);
+    final CountDownLatch started = new CountDownLatch(1);
+    final AsyncConn.Result<Void> running = ac.submit(new AsyncConn.Work<Void>() {
+      @Override
+      public Void run(Conn c) throws SQLiteException {
+        started.countDown();
+        c.exec("WITH RECURSIVE cnt(x) AS (SELECT 1 UNION ALL SELECT x+1 FROM cnt) SELECT count(*) FROM cnt");
+        return null;
+      }
+    });
+    final AsyncConn.Result<Integer> pending = ac.execute("SELECT 1");
+    Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+    Assert.assertEquals(ErrCodes.SQLITE_OK, c.close()); // the running statement is interrupted and waited for
+    try {
+      running.get();
+      Assert.fail("interrupted");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof SQLiteException);
+    }
+    try {
+      pending.get();
+      Assert.fail("cancelled");
+    } catch (CancellationException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package org.sqlite;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH micro-benchmark (not run by the build) comparing the checked column getters with the trusted cursor
+ * (time per row, the step included):
+ * <pre>mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *   -Dexec.args="-cp %classpath org.openjdk.jmh.Main ColumnAccessBench"</pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class ColumnAccessBench {
+  private static final int ROWS = 10000;
+
+  private Conn c;
+  private Stmt s;
+
+  @Setup
+  public void setup() throws SQLiteException {
+    c = ConnTest.open();
+    c.exec("CREATE TABLE bench (i INTEGER, l INTEGER, d REAL, t TEXT)");
+    c.exec("WITH RECURSIVE cnt(x) AS (SELECT 1 UNION ALL SELECT x+1 FROM cnt LIMIT " + ROWS + ") " +
+        "INSERT INTO bench SELECT x, x * 1000000000, x / 3.0, 'row ' || x FROM cnt");
+    s = c.prepare("SELECT i, l, d, t FROM bench");
+  }
+
+  @TearDown
+  public void tearDown() {
+    s.close();
+    c.close();
+  }
+
+  // what driver.Rows used to do: type + mismatch check + value, each through the checked getters
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public void checked(Blackhole bh) throws SQLiteException {
+    s.setTrusted(false);
+    while (s.step()) {
+      for (int iCol = 0; iCol < 3; iCol++) {
+        final int type = s.getColumnType(iCol);
+        s.checkTypeMismatch(iCol, type, iCol == 2 ? ColTypes.SQLITE_FLOAT : ColTypes.SQLITE_INTEGER);
+      }
+      bh.consume(s.getColumnInt(0));
+      bh.consume(s.getColumnLong(1));
+      bh.consume(s.getColumnDouble(2));
+      if (s.getColumnType(3) != ColTypes.SQLITE_NULL) {
+        bh.consume(s.getColumnText(3));
+      }
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public void trusted(Blackhole bh) throws SQLiteException {
+    s.setTrusted(true);
+    while (s.step()) {
+      for (int iCol = 0; iCol < 3; iCol++) {
+        final int type = s.columnType(iCol);
+        s.checkTypeMismatch(iCol, type, iCol == 2 ? ColTypes.SQLITE_FLOAT : ColTypes.SQLITE_INTEGER);
+      }
+      bh.consume(s.columnInt(0));
+      bh.consume(s.columnLong(1));
+      bh.consume(s.columnDouble(2));
+      if (s.columnType(3) != ColTypes.SQLITE_NULL) {
+        bh.consume(s.columnText(3));
+      }
+    }
+  }
+}
@@ -3,6 +3,17 @@ package org.sqlite;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 public class ConnTest {
   @Test
   public void checkLibversion() throws SQLiteException {
@@ -11,6 +22,73 @@ public class ConnTest {
     checkResult(c.close());
   }
 
+  @Test
+  public void checkScript() throws Exception {
+    final Conn c = open();
+    final List<String> executed = new ArrayList<String>();
+    final Script script = new Script(c, new Script.Listener() {
+      @Override
+      public void executed(int index, String sql, long offset) {
+        Assert.assertEquals(executed.size(), index);
+        executed.add(sql);
+      }
+    });
+    Assert.assertEquals(4, script.run("CREATE TABLE test (data TEXT); -- comment\n" +
+        "CREATE TABLE log (data TEXT);\n" +
+        "CREATE TRIGGER tr AFTER INSERT ON test BEGIN INSERT INTO log VALUES (new.data); END;\n" +
+        "/* comment */ INSERT INTO test VALUES ('é;');\n"));
+    Assert.assertEquals(4, executed.size());
+    Assert.assertTrue(executed.get(3), executed.get(3).trim().startsWith("/* comment */ INSERT INTO test VALUES"));
+
+    final int rows = 5000; // many blocks
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < rows; i++) {
+      sb.append("INSERT INTO test VALUES ('row ").append(i).append(" ; with a semicolon'); -- comment; with a semicolon\n");
+    }
+    sb.append("DELETE FROM log WHERE data = 'é;'"); // last statement without semicolon
+    Assert.assertEquals(rows + 1, script.run(new StringReader(sb.toString())));
+    Assert.assertEquals(rows + 5, script.getStatementCount());
+    Assert.assertEquals(rows + 5, executed.size());
+    final Stmt s = c.prepare("SELECT count(*) FROM log");
+    Assert.assertTrue(s.step());
+    Assert.assertEquals(rows, s.getColumnInt(0));
+    s.close();
+
+    // single line script: run by blocks while it is read
+    final int[] executedWhileReading = new int[1];
+    final Reader minified = new Reader() {
+      private final String stmt = "INSERT INTO test VALUES ('row;'); /* ; */ CREATE TRIGGER IF NOT EXISTS tr2 " +
+          "AFTER DELETE ON test BEGIN DELETE FROM log; END;";
+      private int remaining = rows;
+      @Override
+      public int read(char[] cbuf, int off, int len) {
+        if (remaining == 0) {
+          return -1;
+        }
+        remaining--;
+        executedWhileReading[0] = script.getStatementCount();
+        final int n = Math.min(len, stmt.length());
+        stmt.getChars(0, n, cbuf, off);
+        return n;
+      }
+      @Override
+      public void close() {
+      }
+    };
+    Assert.assertEquals(rows * 2, script.run(minified));
+    Assert.assertTrue(executedWhileReading[0] > rows + 5);
+    Assert.assertEquals(rows * 3 + 5, script.getStatementCount());
+
+    try {
+      script.run("INSERT INTO test VALUES ('x'); INSERT INTO missing VALUES (1); INSERT INTO test VALUES ('y')");
+      Assert.fail("prepare error expected");
+    } catch (ConnException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("missing"));
+    }
+    Assert.assertEquals(rows * 3 + 6, script.getStatementCount());
+    checkResult(c.close());
+  }
+
   @Test
   public void checkOpenTempFile() throws SQLiteException {
     final Conn c = Conn.open(Conn.TEMP_FILE, OpenFlags.SQLITE_OPEN_READWRITE, null);
@@ -76,6 +154,221 @@ public class ConnTest {
     checkResult(c.close());
   }
 
+  @Test
+  public void checkBusyHandler() throws Exception {
+    final File file = File.createTempFile("sqlite-jna", ".db");
+    final int flags = OpenFlags.SQLITE_OPEN_READWRITE | OpenFlags.SQLITE_OPEN_FULLMUTEX;
+    final Conn writer = Conn.open(file.getPath(), flags, null);
+    final Conn c = Conn.open(file.getPath(), flags, null);
+    try {
+      writer.exec("CREATE TABLE test (data TEXT); BEGIN IMMEDIATE");
+      c.setBusyHandler(BusyHandlers.yieldFirst(2, BusyHandlers.exponential(100)));
+      try {
+        c.exec("BEGIN IMMEDIATE");
+        Assert.fail("SQLITE_BUSY expected");
+      } catch (SQLiteException e) {
+        Assert.assertEquals(ErrCodes.SQLITE_BUSY, e.getErrorCode());
+      }
+      final BusyStats stats = c.getBusyStats();
+      Assert.assertEquals(1, stats.getGiveUps());
+      Assert.assertEquals(1, stats.getWaits().getCount());
+      Assert.assertTrue(stats.getRetries().getMax() > 2);
+      Assert.assertTrue(stats.getWaits().getMax() >= 100000);
+
+      c.setBusyHandler(BusyHandlers.deadline(5000));
+      final Thread committer = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            Thread.sleep(50);
+            writer.exec("COMMIT");
+          } catch (Exception e) {
+            throw new AssertionError(e);
+          }
+        }
+      });
+      committer.start();
+      c.exec("BEGIN IMMEDIATE; COMMIT");
+      committer.join();
+      Assert.assertEquals(2, stats.getWaits().getCount());
+      Assert.assertEquals(1, stats.getGiveUps());
+    } finally {
+      checkResult(c.close());
+      checkResult(writer.close());
+      file.delete();
+    }
+  }
+
+  @Test
+  public void checkDbStats() throws SQLiteException {
+    final Conn c = Conn.open(Conn.TEMP_FILE, OpenFlags.SQLITE_OPEN_READWRITE, null);
+    c.fastExec("PRAGMA cache_size=10; CREATE TABLE test (data TEXT)");
+    c.exec("BEGIN; WITH RECURSIVE cnt(x) AS (SELECT 1 UNION ALL SELECT x+1 FROM cnt LIMIT 2000) " +
+        "INSERT INTO test SELECT randomblob(100) FROM cnt; COMMIT");
+    DbStats stats = c.getDbStats(true);
+    Assert.assertTrue(stats.getCacheSpill() > 0);
+    Assert.assertTrue(stats.getCacheWrite() > 0);
+    Assert.assertTrue(stats.getCacheHit() > 0);
+    Assert.assertTrue(stats.getCacheUsed() > 0);
+    Assert.assertTrue(stats.getSchemaUsed() > 0);
+    Assert.assertTrue(stats.getMemoryUsed() > 0);
+    Assert.assertTrue(stats.getMemoryHighwater() >= stats.getMemoryUsed());
+    Assert.assertTrue(stats.toString().startsWith("DbStats("));
+
+    stats = c.getDbStats(false); // counters have been reset
+    Assert.assertEquals(0, stats.getCacheSpill());
+    Assert.assertEquals(0, stats.getCacheWrite());
+    Assert.assertEquals(2, c.getDbStatus(DbStatus.SQLITE_DBSTATUS_CACHE_HIT, false).length);
+    Assert.assertTrue(Conn.getStatus(Status.SQLITE_STATUS_MALLOC_COUNT, false)[0] > 0);
+    checkResult(c.close());
+  }
+
+  @Test
+  public void checkTrace() throws SQLiteException {
+    final Conn c = open();
+    c.exec("CREATE TABLE test (data TEXT); CREATE TABLE log (data TEXT);" +
+        "CREATE TRIGGER audit AFTER INSERT ON test BEGIN INSERT INTO log VALUES (new.data); END");
+    final List<String> events = new ArrayList<String>();
+    c.setTraceListener(new TraceListener() {
+      @Override
+      public void statement(long stmt, String sql) {
+        events.add("stmt " + sql);
+      }
+      @Override
+      public void profile(long stmt, String sql, long duration) {
+        Assert.assertTrue(duration >= 0);
+        events.add("profile " + sql);
+      }
+      @Override
+      public void row(long stmt) {
+        events.add("row");
+      }
+      @Override
+      public void close() {
+        events.add("close");
+      }
+    }, TraceMasks.SQLITE_TRACE_STMT | TraceMasks.SQLITE_TRACE_PROFILE | TraceMasks.SQLITE_TRACE_ROW | TraceMasks.SQLITE_TRACE_CLOSE);
+    c.exec("INSERT INTO test VALUES ('x')");
+    final Stmt s = c.prepare("SELECT data FROM log");
+    Assert.assertTrue(s.step());
+    Assert.assertFalse(s.step());
+    checkResult(s.close());
+    checkResult(c.close());
+    Assert.assertEquals(Arrays.asList("stmt INSERT INTO test VALUES ('x')", "stmt -- TRIGGER audit",
+        "stmt -- INSERT INTO log VALUES (new.data)", "profile INSERT INTO test VALUES ('x')", "stmt SELECT data FROM log", "row", "profile SELECT data FROM log",
+        "close"), events);
+  }
+
+  @Test
+  public void checkPublish() throws Exception {
+    final Conn c = open();
+    final RowPublisher<Long> publisher = c.publish(
+        "WITH RECURSIVE cnt(x) AS (SELECT 1 UNION ALL SELECT x+1 FROM cnt) SELECT x FROM cnt WHERE x > ?",
+        new RowMapper<Long>() {
+          @Override
+          public Long map(Stmt s) throws SQLiteException {
+            return s.getColumnLong(0);
+          }
+        }, 10);
+    final List<Long> items = Collections.synchronizedList(new ArrayList<Long>());
+    final CountDownLatch received = new CountDownLatch(5);
+    final RowPublisher.Subscription[] subscription = new RowPublisher.Subscription[1];
+    publisher.subscribe(new RowPublisher.Subscriber<Long>() {
+      @Override
+      public void onSubscribe(RowPublisher.Subscription s) {
+        subscription[0] = s;
+        s.request(3);
+      }
+      @Override
+      public void onNext(Long item) {
+        items.add(item);
+        received.countDown();
+      }
+      @Override
+      public void onError(Throwable throwable) {
+        Assert.fail(throwable.getMessage());
+      }
+      @Override
+      public void onComplete() {
+        Assert.fail("infinite query");
+      }
+    });
+    Thread.sleep(100);
+    Assert.assertEquals(Arrays.asList(11L, 12L, 13L), items); // no more than requested
+    subscription[0].request(2);
+    Assert.assertTrue(received.await(5, TimeUnit.SECONDS));
+    subscription[0].cancel();
+    final Future<?> sync = c.getExecutor().submit(new Runnable() {
+      @Override
+      public void run() {
+      }
+    });
+    sync.get(5, TimeUnit.SECONDS); // statement released
+    Assert.assertEquals(Arrays.asList(11L, 12L, 13L, 14L, 15L), items);
+    Assert.assertEquals(1, c.getStmtCache().size());
+
+    // invalid request signalled on the connection's thread
+    final CountDownLatch failed = new CountDownLatch(1);
+    final Thread[] errorThread = new Thread[1];
+    publisher.subscribe(new RowPublisher.Subscriber<Long>() {
+      @Override
+      public void onSubscribe(RowPublisher.Subscription s) {
+        s.request(0);
+      }
+      @Override
+      public void onNext(Long item) {
+        Assert.fail("no request");
+      }
+      @Override
+      public void onError(Throwable throwable) {
+        Assert.assertTrue(throwable instanceof IllegalArgumentException);
+        errorThread[0] = Thread.currentThread();
+        failed.countDown();
+      }
+      @Override
+      public void onComplete() {
+        Assert.fail("no request");
+      }
+    });
+    Assert.assertTrue(failed.await(5, TimeUnit.SECONDS));
+    Assert.assertEquals("sqlite-jna-conn", errorThread[0].getName());
+
+    // mapper failure signalled and statement released
+    final IllegalStateException bug = new IllegalStateException("bad row");
+    final CountDownLatch mapFailed = new CountDownLatch(1);
+    final Throwable[] error = new Throwable[1];
+    c.publish("SELECT 1 UNION ALL SELECT 2", new RowMapper<Long>() {
+      @Override
+      public Long map(Stmt s) throws SQLiteException {
+        if (s.getColumnLong(0) == 2) {
+          throw bug;
+        }
+        return s.getColumnLong(0);
+      }
+    }).subscribe(new RowPublisher.Subscriber<Long>() {
+      @Override
+      public void onSubscribe(RowPublisher.Subscription s) {
+        s.request(Long.MAX_VALUE);
+      }
+      @Override
+      public void onNext(Long item) {
+      }
+      @Override
+      public void onError(Throwable throwable) {
+        error[0] = throwable;
+        mapFailed.countDown();
+      }
+      @Override
+      public void onComplete() {
+        Assert.fail("mapper failure expected");
+      }
+    });
+    Assert.assertTrue(mapFailed.await(5, TimeUnit.SECONDS));
+    Assert.assertSame(bug, error[0]);
+    Assert.assertEquals(2, c.getStmtCache().size());
+    checkResult(c.close());
+  }
+
   static void checkResult(int res) {
     Assert.assertEquals(0, res);
   }
@@ -0,0 +1,78 @@
+package org.sqlite;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class EventsTest {
+  private static class Recorder extends Events.Adapter {
+    private final List<String> events = new ArrayList<String>();
+    @Override
+    public void prepare(String sql, long start, long duration, boolean cached) {
+      Assert.assertTrue(duration >= 0);
+      events.add(String.format("prepare %s %s", sql, cached));
+    }
+    @Override
+    public void execute(String sql, long start, long duration, long rows) {
+      Assert.assertTrue(duration >= 0);
+      events.add(String.format("execute %s %d", sql, rows));
+    }
+    @Override
+    public void blob(boolean write, long start, long duration, int bytes) {
+      events.add(String.format("blob %s %d", write, bytes));
+    }
+    @Override
+    public void backup(long start, long duration, int pages) {
+      events.add(String.format("backup %d", pages));
+    }
+  }
+
+  @After
+  public void disable() {
+    Events.setListener(null);
+  }
+
+  @Test
+  public void checkEvents() throws SQLiteException {
+    final Conn c = ConnTest.open();
+    c.exec("CREATE TABLE test (data BLOB); INSERT INTO test VALUES (zeroblob(10)), (zeroblob(10))");
+    final Recorder recorder = new Recorder();
+    Events.setListener(recorder);
+
+    for (int i = 0; i < 2; i++) {
+      final Stmt s = c.prepare("SELECT rowid FROM test");
+      while (s.step()) {
+        // rows counted
+      }
+      checkResult(s.close());
+    }
+    final Blob blob = c.open("main", "test", "data", 1, true);
+    blob.write(ByteBuffer.wrap(new byte[4]));
+    blob.read(ByteBuffer.allocate(10));
+    blob.closeAndCheck();
+
+    final Conn dst = ConnTest.open();
+    final Backup backup = Conn.open(dst, "main", c, "main");
+    Assert.assertFalse(backup.step(-1));
+    backup.finishAndCheck();
+    checkResult(dst.close());
+    checkResult(c.close());
+
+    Assert.assertEquals(7, recorder.events.size());
+    Assert.assertEquals("prepare SELECT rowid FROM test false", recorder.events.get(0));
+    Assert.assertEquals("execute SELECT rowid FROM test 2", recorder.events.get(1));
+    Assert.assertEquals("prepare SELECT rowid FROM test true", recorder.events.get(2));
+    Assert.assertEquals("execute SELECT rowid FROM test 2", recorder.events.get(3));
+    Assert.assertEquals("blob true 4", recorder.events.get(4));
+    Assert.assertEquals("blob false 10", recorder.events.get(5));
+    Assert.assertEquals("backup 2", recorder.events.get(6));
+  }
+
+  static void checkResult(int res) {
+    Assert.assertEquals(0, res);
+  }
+}
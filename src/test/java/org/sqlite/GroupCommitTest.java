@@ -0,0 +1,104 @@
+package org.sqlite;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class GroupCommitTest {
+  @Test
+  public void groups() throws Exception {
+    final Conn c = ConnTest.open();
+    c.exec("CREATE TABLE test (id INTEGER PRIMARY KEY, data TEXT NOT NULL)");
+    final GroupCommit gc = new GroupCommit(c, 10, 50);
+    final List<AsyncConn.Result<Long>> results = new ArrayList<AsyncConn.Result<Long>>();
+    for (int i = 0; i < 25; i++) {
+      final String data = i == 7 ? null : "row " + i; // task 7 violates the NOT NULL constraint
+      results.add(gc.submit(new AsyncConn.Work<Long>() {
+        @Override
+        public Long run(Conn c) throws SQLiteException {
+          final Stmt s = c.prepare("INSERT INTO test (data) VALUES (?)");
+          try {
+            s.bind(data);
+            s.exec();
+          } finally {
+            s.close();
+          }
+          return c.getLastInsertRowid();
+        }
+      }));
+    }
+    for (int i = 0; i < results.size(); i++) {
+      if (i == 7) {
+        try {
+          results.get(i).get();
+          Assert.fail("constraint violation expected");
+        } catch (ExecutionException e) {
+          Assert.assertTrue(e.getCause() instanceof StmtException);
+        }
+      } else {
+        Assert.assertNotNull(results.get(i).get());
+      }
+    }
+    gc.close();
+    Assert.assertEquals(25, gc.getTaskCount());
+    Assert.assertTrue(gc.getGroupCount() < 25);
+    try {
+      gc.submit(new AsyncConn.Work<Void>() {
+        @Override
+        public Void run(Conn c) {
+          return null;
+        }
+      }).get();
+      Assert.fail("closed");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof ConnException);
+    }
+    final Stmt s = c.prepare("SELECT count(*) FROM test");
+    Assert.assertTrue(s.step());
+    Assert.assertEquals(24, s.getColumnInt(0));
+    ConnTest.checkResult(s.close());
+    ConnTest.checkResult(c.close());
+  }
+
+  @Test
+  public void writerError() throws Exception {
+    final Conn c = ConnTest.open();
+    c.exec("CREATE TABLE test (data TEXT)");
+    final GroupCommit gc = new GroupCommit(c, 10, 50);
+    final AsyncConn.Result<Void> failed = gc.submit(new AsyncConn.Work<Void>() {
+      @Override
+      public Void run(Conn c) throws SQLiteException {
+        c.exec("INSERT INTO test VALUES ('ko')");
+        throw new AssertionError("writer thread killed");
+      }
+    });
+    try {
+      failed.get();
+      Assert.fail("error expected");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof AssertionError);
+    }
+    // queued before the writer thread is gone or rejected afterwards
+    try {
+      gc.submit(new AsyncConn.Work<Void>() {
+        @Override
+        public Void run(Conn c) {
+          return null;
+        }
+      }).get(5, TimeUnit.SECONDS);
+      Assert.fail("writer thread stopped");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof ConnException);
+    }
+    gc.close();
+    final Stmt s = c.prepare("SELECT count(*) FROM test");
+    Assert.assertTrue(s.step());
+    Assert.assertEquals(0, s.getColumnInt(0));
+    ConnTest.checkResult(s.close());
+    ConnTest.checkResult(c.close());
+  }
+}
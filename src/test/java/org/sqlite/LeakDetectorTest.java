@@ -0,0 +1,77 @@
+package org.sqlite;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+public class LeakDetectorTest {
+  private final List<String> reports = new ArrayList<String>();
+
+  @After
+  public void disable() {
+    LeakDetector.disable();
+    LeakDetector.setReporter(null);
+  }
+
+  private void enable() {
+    LeakDetector.enable(1);
+    LeakDetector.setReporter(new LeakDetector.Reporter() {
+      @Override
+      public void leaked(String resource, Throwable allocation, boolean dangling) {
+        Assert.assertNotNull(allocation);
+        reports.add(String.format("%s %s", resource, dangling));
+      }
+    });
+  }
+
+  @Test
+  public void checkLeak() throws Exception {
+    enable();
+    final Conn c = ConnTest.open();
+    final long leaks = LeakDetector.getLeaks();
+    leak(c);
+    for (int i = 0; i < 100 && LeakDetector.getLeaks() == leaks; i++) {
+      System.gc();
+      Thread.sleep(10);
+      checkResult(c.prepare("SELECT 1", false).close()); // drains
+    }
+    Assert.assertEquals(leaks + 1, LeakDetector.getLeaks());
+    Assert.assertEquals("Stmt 'SELECT 2' false", reports.get(0));
+    checkResult(c.close());
+  }
+  private static void leak(Conn c) throws SQLiteException {
+    c.prepare("SELECT 2", false);
+  }
+
+  @Test
+  public void checkDangling() throws SQLiteException {
+    enable();
+    final Conn c = ConnTest.open();
+    final Stmt s = c.prepare("SELECT 3", false);
+    Assert.assertTrue(s.step());
+    checkResult(c.close());
+    Assert.assertEquals(1, reports.size());
+    Assert.assertEquals("Stmt 'SELECT 3' true", reports.get(0));
+    checkResult(s.close()); // already finalized
+    Assert.assertTrue(s.isClosed());
+  }
+
+  @Test
+  public void checkLeakedCache() throws Exception {
+    final Conn c = ConnTest.open();
+    checkResult(c.prepare("SELECT 4").close());
+    Assert.assertEquals(1, c.getStmtCache().size());
+    // what the GC does with a leaked connection (the cached statement is not guarded anymore)
+    final Field field = Conn.class.getDeclaredField("guard");
+    field.setAccessible(true);
+    checkResult(((Guard) field.get(c)).release(true));
+  }
+
+  static void checkResult(int res) {
+    Assert.assertEquals(0, res);
+  }
+}
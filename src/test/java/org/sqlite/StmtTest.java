@@ -3,6 +3,10 @@ package org.sqlite;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 public class StmtTest {
   @Test
   public void checkPrepare() throws SQLiteException {
@@ -33,6 +37,282 @@ public class StmtTest {
     checkResult(c.close());
   }
 
+  @Test
+  public void checkCache() throws SQLiteException {
+    final Conn c = ConnTest.open();
+    final StmtCache cache = c.getStmtCache();
+    final Stmt s = c.prepare("SELECT ?");
+    s.bind("TEST");
+    Assert.assertTrue(s.step());
+    checkResult(s.close());
+    Assert.assertEquals(1, cache.size());
+    Assert.assertTrue(s.isClosed()); // only the native statement is cached
+    try {
+      s.step();
+      Assert.fail("closed statement");
+    } catch (StmtException e) {
+      // expected
+    }
+
+    final Stmt cached = c.prepare("SELECT ?");
+    Assert.assertNotSame(s, cached);
+    Assert.assertFalse(cached.isBusy());
+    Assert.assertTrue(cached.step());
+    Assert.assertNull(cached.getColumnText(0)); // bindings cleared
+    checkResult(cached.close());
+    checkResult(cached.close()); // not cached twice
+    Assert.assertEquals(1, cache.size());
+    Assert.assertEquals(1, cache.getHits());
+    Assert.assertEquals(1, cache.getMisses());
+    final Stmt first = c.prepare("SELECT ?");
+    final Stmt second = c.prepare("SELECT ?");
+    Assert.assertEquals(0, cache.size());
+    checkResult(first.close());
+    checkResult(second.close());
+    Assert.assertEquals(1, cache.size());
+    Assert.assertEquals(1, cache.getEvictions()); // same SQL checked out twice
+
+    cache.setMaxSize(1);
+    checkResult(c.prepare("SELECT 1").close());
+    Assert.assertEquals(1, cache.size());
+    Assert.assertEquals(2, cache.getEvictions());
+
+    final Stmt uncached = c.prepare("SELECT 2", false);
+    checkResult(uncached.close());
+    Assert.assertTrue(uncached.isClosed());
+    checkResult(c.close());
+    Assert.assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void checkStatus() throws SQLiteException {
+    final Conn c = ConnTest.open();
+    final StmtStats stats = new StmtStats();
+    c.setStmtStats(stats);
+    c.exec("CREATE TABLE t1 (a INT, b TEXT); CREATE TABLE t2 (a INT, c TEXT);" +
+        "WITH RECURSIVE cnt(x) AS (SELECT 1 UNION ALL SELECT x+1 FROM cnt LIMIT 100) INSERT INTO t1 SELECT x, x FROM cnt;" +
+        "INSERT INTO t2 SELECT a, b FROM t1");
+
+    final String scan = "SELECT count(*) FROM t1 WHERE b = ?";
+    for (int i = 0; i < 2; i++) {
+      final Stmt s = c.prepare(scan);
+      s.bind("1");
+      Assert.assertTrue(s.step());
+      Assert.assertEquals(1, s.getColumnInt(0));
+      Assert.assertTrue(s.getStatus(StmtStatus.SQLITE_STMTSTATUS_VM_STEP, false) > 0);
+      checkResult(s.close());
+    }
+    StmtStats.Entry e = stats.get(scan);
+    Assert.assertEquals(2, e.getExecutions());
+    Assert.assertEquals(2, e.getRuns());
+    Assert.assertEquals(198, e.getFullscanSteps());
+    Assert.assertEquals(0, e.getAutoindexes());
+    Assert.assertTrue(e.getMemUsed() > 0);
+
+    final String join = "SELECT t2.c FROM t1, t2 WHERE t1.a = t2.a ORDER BY t2.c";
+    final Stmt s = c.prepare(join);
+    Assert.assertTrue(s.step());
+    s.reset();
+    checkResult(s.close());
+    e = stats.get(join);
+    Assert.assertEquals(1, e.getExecutions());
+    Assert.assertTrue(e.getAutoindexes() > 0);
+    Assert.assertTrue(e.getSorts() > 0);
+    Assert.assertEquals(join, stats.getTop(StmtStatus.SQLITE_STMTSTATUS_AUTOINDEX).get(0).getSql());
+
+    final StmtStats bounded = new StmtStats(2);
+    c.setStmtStats(bounded);
+    for (int i = 0; i < 3; i++) {
+      final Stmt select = c.prepare("SELECT " + i);
+      Assert.assertTrue(select.step());
+      checkResult(select.close());
+    }
+    Assert.assertEquals(2, bounded.size());
+    Assert.assertEquals(1, bounded.getEvictions());
+    Assert.assertNull(bounded.get("SELECT 0"));
+    checkResult(c.close());
+  }
+
+  @Test
+  public void checkSlowQueryLog() throws SQLiteException {
+    final Conn c = ConnTest.open();
+    c.exec("CREATE TABLE test (a INT, b TEXT); INSERT INTO test VALUES (1, 'x'), (2, 'y')");
+    final List<SlowQuery> queries = new ArrayList<SlowQuery>();
+    final SlowQueryLog log = new SlowQueryLog(0, 2) {
+      @Override
+      protected void log(SlowQuery query) {
+        queries.add(query);
+      }
+    };
+    c.setSlowQueryLog(log);
+    final String sql = "SELECT b FROM test WHERE a = ?";
+    for (int i = 0; i < 3; i++) {
+      final Stmt s = c.prepare(sql);
+      s.bind(1);
+      Assert.assertTrue(s.step());
+      Assert.assertEquals("x", s.getColumnText(0));
+      checkResult(s.close());
+    }
+    Assert.assertEquals(2, queries.size());
+    Assert.assertEquals(1, log.getSuppressed());
+    final SlowQuery query = queries.get(0);
+    Assert.assertEquals(sql, query.getSql());
+    Assert.assertEquals("SELECT b FROM test WHERE a = 1", query.getExpandedSql());
+    Assert.assertEquals(1, query.getRows());
+    Assert.assertTrue(query.getDuration() > 0);
+    Assert.assertTrue(query.getPlan(), query.getPlan().startsWith("SCAN"));
+    Assert.assertSame(query.getPlan(), queries.get(1).getPlan()); // captured once
+    c.setSlowQueryLog(null);
+    checkResult(c.close());
+  }
+
+  @Test
+  public void checkQueryTimeout() throws SQLiteException {
+    final Conn c = ConnTest.open();
+    final Stmt s = c.prepare("WITH RECURSIVE cnt(x) AS (SELECT 1 UNION ALL SELECT x+1 FROM cnt) SELECT count(*) FROM cnt");
+    s.setQueryTimeout(100);
+    try {
+      s.step();
+      Assert.fail("timeout expected");
+    } catch (StmtException e) {
+      Assert.assertEquals(ErrCodes.SQLITE_INTERRUPT, e.getErrorCode());
+      Assert.assertTrue(s.isTimedOut());
+    }
+    s.setQueryTimeout(0);
+    final Stmt fast = c.prepare("SELECT 1");
+    fast.setQueryTimeout(100);
+    Assert.assertTrue(fast.step());
+    Assert.assertFalse(fast.isTimedOut());
+    checkResult(fast.close());
+    checkResult(s.close());
+    checkResult(c.close());
+  }
+
+  @Test
+  public void checkTrusted() throws SQLiteException {
+    final Conn c = ConnTest.open();
+    final Stmt s = c.prepare("SELECT 1, 3.14, 'text', null, x'0102' UNION ALL SELECT null, 2, 'x', 4, null");
+    Assert.assertTrue(s.step());
+    s.setTrusted(true); // types of the current row read on first access
+    Assert.assertEquals(ColTypes.SQLITE_INTEGER, s.columnType(0));
+    Assert.assertEquals(1, s.columnInt(0));
+    Assert.assertEquals(ColTypes.SQLITE_FLOAT, s.columnType(1));
+    Assert.assertEquals(3.14, s.columnDouble(1), 0.0);
+    Assert.assertEquals(ColTypes.SQLITE_TEXT, s.columnType(2));
+    Assert.assertEquals("text", s.columnText(2));
+    Assert.assertEquals(ColTypes.SQLITE_NULL, s.columnType(3));
+    Assert.assertEquals(ColTypes.SQLITE_BLOB, s.columnType(4));
+    Assert.assertArrayEquals(new byte[]{1, 2}, s.columnBlob(4));
+    try {
+      s.columnType(5);
+      Assert.fail("invalid column index");
+    } catch (StmtException e) {
+      Assert.assertEquals(ErrCodes.WRAPPER_SPECIFIC, e.getErrorCode());
+    }
+    Assert.assertTrue(s.step());
+    Assert.assertEquals(ColTypes.SQLITE_NULL, s.columnType(0));
+    Assert.assertEquals(ColTypes.SQLITE_INTEGER, s.columnType(1));
+    Assert.assertEquals("2", s.columnText(1)); // converted
+    Assert.assertEquals(ColTypes.SQLITE_INTEGER, s.columnType(1)); // type before conversion
+    Assert.assertEquals(4L, s.columnLong(3));
+    Assert.assertFalse(s.step());
+    try {
+      s.columnType(0);
+      Assert.fail("no current row");
+    } catch (StmtException e) {
+      Assert.assertEquals(ErrCodes.WRAPPER_SPECIFIC, e.getErrorCode());
+    }
+    checkResult(s.close());
+    checkResult(c.close());
+  }
+
+  @Test
+  public void checkFetch() throws SQLiteException {
+    final Conn c = ConnTest.open();
+    c.exec("CREATE TABLE test (i INT, d REAL, t TEXT, b BLOB)");
+    c.exec("WITH RECURSIVE cnt(x) AS (SELECT 1 UNION ALL SELECT x+1 FROM cnt LIMIT 100) " +
+        "INSERT INTO test SELECT x % 10, x / 2.0, 'row ' || x, CASE WHEN x % 3 = 0 THEN NULL ELSE x'CAFE' END FROM cnt");
+    c.exec("INSERT INTO test VALUES (NULL, NULL, NULL, x'')");
+    final Stmt s = c.prepare("SELECT i, d, t, b FROM test ORDER BY rowid");
+    final int capacity = 64;
+    final long[] is = new long[capacity];
+    final double[] ds = new double[capacity];
+    final int[] toffsets = new int[capacity], tlengths = new int[capacity];
+    final int[] boffsets = new int[capacity], blengths = new int[capacity];
+    final long[][] nulls = new long[4][1];
+    final ColumnBatch batch = new ColumnBatch(capacity, 4)
+        .longs(0, is, nulls[0])
+        .doubles(1, ds, nulls[1])
+        .bytes(2, toffsets, tlengths, nulls[2])
+        .bytes(3, boffsets, blengths, nulls[3])
+        .arena(new byte[16]);
+    Assert.assertEquals(capacity, s.fetch(batch));
+    Assert.assertEquals(1, is[0]);
+    Assert.assertEquals(0.5, ds[0], 0.0);
+    Assert.assertEquals("row 1", batch.getText(2, 0));
+    Assert.assertEquals(2, blengths[0]);
+    Assert.assertEquals((byte) 0xCA, batch.getArena()[boffsets[0]]);
+    Assert.assertEquals(0, is[9]);
+    Assert.assertFalse(batch.isNull(0, 9));
+    Assert.assertTrue(batch.isNull(3, 2));
+    Assert.assertEquals("row 64", batch.getText(2, 63));
+
+    Assert.assertEquals(37, s.fetch(batch));
+    Assert.assertEquals("row 65", batch.getText(2, 0));
+    final int last = 36;
+    Assert.assertTrue(batch.isNull(0, last));
+    Assert.assertTrue(batch.isNull(1, last));
+    Assert.assertNull(batch.getText(2, last));
+    Assert.assertFalse(batch.isNull(3, last)); // zero-length
+    Assert.assertEquals(0, blengths[last]);
+    checkResult(s.close());
+    checkResult(c.close());
+  }
+
+  @Test
+  public void checkIterate() throws SQLiteException {
+    final Conn c = ConnTest.open();
+    final RowMapper<String> mapper = new RowMapper<String>() {
+      @Override
+      public String map(Stmt s) throws SQLiteException {
+        return s.getColumnText(0);
+      }
+    };
+    final String sql = "WITH RECURSIVE cnt(x) AS (SELECT 1 UNION ALL SELECT x+1 FROM cnt LIMIT ?) SELECT 'row ' || x FROM cnt";
+    final List<String> rows = new ArrayList<String>();
+    for (String row : c.iterate(sql, mapper, 3)) {
+      rows.add(row);
+    }
+    Assert.assertEquals(Arrays.asList("row 1", "row 2", "row 3"), rows);
+    Assert.assertEquals(1, c.getStmtCache().size()); // returned to the cache
+
+    // early close
+    final Stmt s = c.prepare(sql);
+    s.bind(1000000);
+    try (RowIterator<String> it = s.iterate(mapper)) {
+      Assert.assertEquals("row 1", it.next());
+      Assert.assertEquals("row 2", it.next());
+      Assert.assertEquals(2, it.getRowCount());
+    }
+    Assert.assertFalse(s.isBusy()); // reset
+    checkResult(s.close());
+
+    final RowIterator<String> it = c.iterate(sql, new RowMapper<String>() {
+      @Override
+      public String map(Stmt s) throws SQLiteException {
+        return s.getColumnText(1); // invalid column index
+      }
+    }, 10);
+    try {
+      it.next();
+      Assert.fail("mapping error expected");
+    } catch (UncheckedSQLiteException e) {
+      Assert.assertEquals(ErrCodes.WRAPPER_SPECIFIC, e.getCause().getErrorCode());
+    }
+    Assert.assertFalse(it.hasNext());
+    checkResult(c.close());
+  }
+
   static void checkResult(int res) {
     Assert.assertEquals(0, res);
   }
@@ -0,0 +1,119 @@
+package org.sqlite.driver;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.sqlite.OpenFlags;
+import org.sqlite.TraceListener;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConnConfigTest {
+  @Test
+  public void parse() throws SQLException {
+    final Properties info = new Properties();
+    info.setProperty(ConnConfig.SYNCHRONOUS, "full");
+    final ConnConfig config = ConnConfig.parse("test.db?mode=ro&synchronous=OFF&cache_size=-2000&profile=read-mostly", info);
+    Assert.assertEquals("test.db", config.getFilename());
+    Assert.assertEquals(OpenFlags.SQLITE_OPEN_READONLY, config.getFlags() & OpenFlags.SQLITE_OPEN_READONLY);
+    Assert.assertEquals(0, config.getFlags() & OpenFlags.SQLITE_OPEN_CREATE);
+    // properties override URL which overrides profile
+    Assert.assertEquals("PRAGMA journal_mode=WAL;PRAGMA synchronous=FULL;PRAGMA cache_size=-2000;" +
+        "PRAGMA mmap_size=268435456;PRAGMA temp_store=MEMORY;", config.getPragmas(false));
+    Assert.assertEquals("PRAGMA synchronous=FULL;PRAGMA cache_size=-2000;" +
+        "PRAGMA mmap_size=268435456;PRAGMA temp_store=MEMORY;", config.getPragmas(true));
+
+    final ConnConfig uri = ConnConfig.parse("file:test.db?mode=ro&busy_timeout=100", null);
+    Assert.assertEquals("file:test.db?mode=ro&busy_timeout=100", uri.getFilename());
+    Assert.assertEquals(100, uri.getBusyTimeout());
+  }
+
+  @Test(expected = SQLException.class)
+  public void invalidChoice() throws SQLException {
+    ConnConfig.parse(":memory:?journal_mode=bogus", null);
+  }
+
+  @Test
+  public void connect() throws SQLException {
+    final Properties info = new Properties();
+    info.setProperty(ConnConfig.FOREIGN_KEYS, "true");
+    info.setProperty(ConnConfig.STMT_STATS, "true");
+    Connection c = null;
+    try {
+      c = DriverManager.getConnection(JDBC.MEMORY + "?temp_store=MEMORY&cache_size=1234", info);
+      final Statement stmt = c.createStatement();
+      Assert.assertEquals(1, queryInt(stmt, "PRAGMA foreign_keys"));
+      Assert.assertEquals(2, queryInt(stmt, "PRAGMA temp_store"));
+      Assert.assertEquals(1234, queryInt(stmt, "PRAGMA cache_size"));
+      stmt.close();
+      Assert.assertTrue(c.isWrapperFor(org.sqlite.Conn.class));
+      Assert.assertEquals(1, c.unwrap(org.sqlite.Conn.class).getStmtStats().get("PRAGMA cache_size").getExecutions());
+
+      final DriverPropertyInfo[] infos = new JDBC().getPropertyInfo(JDBC.MEMORY + "?temp_store=MEMORY", info);
+      Assert.assertTrue(infos.length > 0);
+      for (DriverPropertyInfo pi : infos) {
+        if (ConnConfig.TEMP_STORE.equals(pi.name)) {
+          Assert.assertEquals("MEMORY", pi.value);
+        }
+      }
+    } finally {
+      if (null != c) c.close();
+    }
+  }
+
+  public static class CountingListener implements TraceListener {
+    static final AtomicInteger PROFILED = new AtomicInteger();
+    @Override
+    public void statement(long stmt, String sql) {
+    }
+    @Override
+    public void profile(long stmt, String sql, long duration) {
+      PROFILED.incrementAndGet();
+    }
+    @Override
+    public void row(long stmt) {
+    }
+    @Override
+    public void close() {
+    }
+  }
+
+  @Test
+  public void traceListener() throws SQLException {
+    final Properties info = new Properties();
+    info.setProperty(ConnConfig.TRACE_LISTENER, CountingListener.class.getName());
+    info.setProperty(ConnConfig.TRACE_MASK, "profile");
+    Connection c = null;
+    try {
+      c = DriverManager.getConnection(JDBC.MEMORY, info);
+      final int profiled = CountingListener.PROFILED.get();
+      final Statement stmt = c.createStatement();
+      Assert.assertEquals(1, queryInt(stmt, "SELECT 1"));
+      stmt.close();
+      Assert.assertEquals(profiled + 1, CountingListener.PROFILED.get());
+    } finally {
+      if (null != c) c.close();
+    }
+    info.setProperty(ConnConfig.TRACE_MASK, "profile,unknown");
+    try {
+      ConnConfig.parse(JDBC.MEMORY, info);
+      Assert.fail("invalid mask expected");
+    } catch (SQLException e) {
+      // expected
+    }
+  }
+
+  private static int queryInt(Statement stmt, String sql) throws SQLException {
+    final ResultSet rs = stmt.executeQuery(sql);
+    Assert.assertTrue(rs.next());
+    final int i = rs.getInt(1);
+    rs.close();
+    return i;
+  }
+}
@@ -0,0 +1,122 @@
+package org.sqlite.driver;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.sqlite.Events;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class ConnTest {
+  private static final String INFINITE = "WITH RECURSIVE cnt(x) AS (SELECT 1 UNION ALL SELECT x+1 FROM cnt) SELECT count(*) FROM cnt";
+
+  @Test
+  public void transactionEvents() throws SQLException {
+    final List<String> commands = new ArrayList<String>();
+    Events.setListener(new Events.Adapter() {
+      @Override
+      public void transaction(String command, long start, long duration) {
+        commands.add(command);
+      }
+    });
+    Connection c = null;
+    try {
+      c = DriverManager.getConnection(JDBC.MEMORY);
+      c.setAutoCommit(false);
+      final Savepoint savepoint = c.setSavepoint("test");
+      c.rollback(savepoint);
+      c.releaseSavepoint(savepoint);
+      c.commit();
+      c.rollback();
+      c.setAutoCommit(true);
+      Assert.assertEquals(Arrays.asList("BEGIN", "SAVEPOINT", "ROLLBACK TO", "RELEASE", "COMMIT", "ROLLBACK", "COMMIT"), commands);
+    } finally {
+      Events.setListener(null);
+      if (null != c) c.close();
+    }
+  }
+
+  @Test
+  public void networkTimeout() throws Exception {
+    Connection c = null;
+    try {
+      c = DriverManager.getConnection(JDBC.MEMORY);
+      c.setNetworkTimeout(null, 100);
+      Assert.assertEquals(100, c.getNetworkTimeout());
+      final Statement stmt = c.createStatement();
+      try {
+        stmt.executeQuery(INFINITE);
+        Assert.fail("timeout expected");
+      } catch (SQLTimeoutException e) {
+        // expected
+      }
+      final ResultSet rs = stmt.executeQuery("SELECT 1");
+      Assert.assertTrue(rs.next());
+      rs.close();
+      // the limit applies to each step, not to the time spent between steps
+      final ResultSet slow = stmt.executeQuery("SELECT 1 UNION ALL SELECT 2 UNION ALL SELECT 3");
+      while (slow.next()) {
+        Thread.sleep(80);
+      }
+      slow.close();
+      try {
+        stmt.executeQuery(INFINITE);
+        Assert.fail("timeout expected");
+      } catch (SQLTimeoutException e) {
+        // expected
+      }
+      stmt.close();
+    } finally {
+      if (null != c) c.close();
+    }
+  }
+
+  @Test
+  public void abort() throws Exception {
+    final Connection c = DriverManager.getConnection(JDBC.MEMORY);
+    final Statement stmt = c.createStatement();
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final Thread aborter = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            Thread.sleep(100);
+            c.abort(executor);
+          } catch (Exception e) {
+            throw new AssertionError(e);
+          }
+        }
+      });
+      aborter.start();
+      try {
+        stmt.executeQuery(INFINITE);
+        Assert.fail("interruption expected");
+      } catch (SQLException e) {
+        // expected
+      }
+      aborter.join();
+      Assert.assertTrue(c.isClosed());
+      try {
+        c.createStatement();
+        Assert.fail("connection aborted");
+      } catch (SQLException e) {
+        // expected
+      }
+    } finally {
+      executor.shutdown();
+      Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+  }
+}
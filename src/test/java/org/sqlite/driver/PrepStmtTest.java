@@ -0,0 +1,334 @@
+package org.sqlite.driver;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.sqlite.BindBatch;
+import org.sqlite.Limits;
+import org.sqlite.StmtCache;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Properties;
+
+public class PrepStmtTest {
+  @Test
+  public void poolable() throws SQLException {
+    final Properties info = new Properties();
+    info.setProperty(JDBC.STMT_CACHE_SIZE, "5");
+    Connection c = null;
+    try {
+      c = DriverManager.getConnection(JDBC.MEMORY, info);
+      final StmtCache cache = ((Conn) c).getConn().getStmtCache();
+      Assert.assertEquals(5, cache.getMaxSize());
+
+      for (int i = 0; i < 3; i++) {
+        final PreparedStatement pstmt = c.prepareStatement("SELECT ?");
+        Assert.assertTrue(pstmt.isPoolable());
+        pstmt.setInt(1, i);
+        final ResultSet rs = pstmt.executeQuery();
+        Assert.assertTrue(rs.next());
+        Assert.assertEquals(i, rs.getInt(1));
+        rs.close();
+        pstmt.close();
+      }
+      Assert.assertEquals(2, cache.getHits());
+      Assert.assertEquals(1, cache.size());
+
+      final PreparedStatement pstmt = c.prepareStatement("SELECT ?");
+      pstmt.setPoolable(false);
+      pstmt.close();
+      Assert.assertEquals(0, cache.size());
+
+      final Statement stmt = c.createStatement();
+      Assert.assertFalse(stmt.isPoolable());
+      stmt.executeQuery("SELECT 1").close();
+      stmt.close();
+      Assert.assertEquals(0, cache.size());
+    } finally {
+      if (null != c) c.close();
+    }
+  }
+
+  @Test
+  public void prefetch() throws SQLException {
+    Connection c = null;
+    try {
+      c = DriverManager.getConnection(JDBC.MEMORY);
+      final PreparedStatement pstmt = c.prepareStatement(
+          "WITH RECURSIVE cnt(x) AS (SELECT 1 UNION ALL SELECT x+1 FROM cnt LIMIT 1000) " +
+              "SELECT x, x / 2.0, 'row ' || x, CASE WHEN x % 2 = 0 THEN NULL ELSE x'CAFE' END FROM cnt");
+      pstmt.setFetchSize(16);
+      Assert.assertEquals(16, pstmt.getFetchSize());
+      ResultSet rs = pstmt.executeQuery();
+      Assert.assertEquals(16, rs.getFetchSize());
+      int n = 0;
+      while (rs.next()) {
+        n++;
+        Assert.assertEquals(n, rs.getInt(1));
+        Assert.assertEquals(n / 2.0, rs.getDouble(2), 0.0);
+        Assert.assertEquals("row " + n, rs.getString(3));
+        Assert.assertEquals(n % 2 == 0, rs.getBytes(4) == null);
+        Assert.assertEquals(n % 2 == 0, rs.wasNull());
+      }
+      Assert.assertEquals(1000, n);
+      rs.close();
+
+      // early close and re-execution
+      pstmt.setMaxRows(100);
+      rs = pstmt.executeQuery();
+      Assert.assertTrue(rs.next());
+      Assert.assertEquals(1L, rs.getObject(1));
+      rs.close();
+      rs = pstmt.executeQuery();
+      n = 0;
+      while (rs.next()) {
+        n++;
+      }
+      Assert.assertEquals(100, n);
+      rs.close();
+
+      // nested loop: both cursors are prefetched by the connection's thread
+      pstmt.setMaxRows(0);
+      final PreparedStatement inner = c.prepareStatement(
+          "WITH RECURSIVE cnt(x) AS (SELECT 1 UNION ALL SELECT x+1 FROM cnt LIMIT 100) SELECT x FROM cnt");
+      inner.setFetchSize(8);
+      rs = pstmt.executeQuery();
+      long sum = 0;
+      for (int i = 0; i < 5 && rs.next(); i++) {
+        final ResultSet irs = inner.executeQuery();
+        while (irs.next()) {
+          sum += irs.getInt(1);
+        }
+        irs.close();
+      }
+      Assert.assertEquals(5 * 5050, sum);
+      rs.close();
+      inner.close();
+      pstmt.close();
+    } finally {
+      if (null != c) c.close();
+    }
+  }
+
+  @Test
+  public void executeMany() throws SQLException {
+    Connection c = null;
+    try {
+      c = DriverManager.getConnection(JDBC.MEMORY);
+      final Statement stmt = c.createStatement();
+      stmt.executeUpdate("CREATE TABLE test (id INTEGER PRIMARY KEY, d REAL, t TEXT NOT NULL, b BLOB)");
+      final int rows = 100;
+      final long[] ids = new long[rows];
+      final double[] ds = new double[rows];
+      final long[] dNulls = new long[2];
+      final String[] ts = new String[rows];
+      final byte[][] bs = new byte[rows][];
+      for (int i = 0; i < rows; i++) {
+        ids[i] = i + 1;
+        ds[i] = i / 2.0;
+        ts[i] = "row " + i;
+        bs[i] = i % 2 == 0 ? null : new byte[]{(byte) i};
+      }
+      dNulls[0] |= 1L << 3;
+      dNulls[1] |= 1L << (70 - 64);
+      ts[50] = null; // NOT NULL constraint failed
+      final PrepStmt pstmt = (PrepStmt) c.prepareStatement("INSERT INTO test VALUES (?, ?, ?, ?)");
+      final BindBatch batch = new BindBatch(4)
+          .longs(1, ids, null)
+          .doubles(2, ds, dNulls)
+          .texts(3, ts)
+          .blobs(4, bs);
+      try {
+        pstmt.executeMany(new BindBatch(3).longs(1, ids, null).doubles(2, ds, dNulls).texts(3, ts), rows);
+        Assert.fail("parameter count mismatch expected");
+      } catch (SQLException e) {
+        Assert.assertFalse(e instanceof BatchUpdateException);
+      }
+      try {
+        pstmt.executeMany(batch, rows);
+        Assert.fail("constraint violation expected");
+      } catch (BatchUpdateException e) {
+        final int[] counts = e.getUpdateCounts();
+        Assert.assertEquals(rows, counts.length);
+        Assert.assertEquals(Statement.EXECUTE_FAILED, counts[50]);
+        Assert.assertEquals(1, counts[51]);
+      }
+      pstmt.close();
+      final ResultSet rs = stmt.executeQuery("SELECT count(*), count(d), count(b) FROM test");
+      Assert.assertTrue(rs.next());
+      Assert.assertEquals(rows - 1, rs.getInt(1));
+      Assert.assertEquals(rows - 3, rs.getInt(2));
+      Assert.assertEquals(rows / 2, rs.getInt(3));
+      rs.close();
+      stmt.close();
+    } finally {
+      if (null != c) c.close();
+    }
+  }
+
+  @Test
+  public void batchCommitSize() throws SQLException {
+    final Properties info = new Properties();
+    info.setProperty(ConnConfig.BATCH_COMMIT_SIZE, "4");
+    Connection c = null;
+    try {
+      c = DriverManager.getConnection(JDBC.MEMORY, info);
+      final Statement stmt = c.createStatement();
+      stmt.executeUpdate("CREATE TABLE test (id INTEGER PRIMARY KEY, t TEXT NOT NULL)");
+      final PrepStmt pstmt = (PrepStmt) c.prepareStatement("INSERT INTO test VALUES (?, ?)");
+      Assert.assertEquals(4, pstmt.getBatchCommitSize());
+      final int rows = 10;
+      for (int i = 0; i < rows; i++) {
+        pstmt.setInt(1, i);
+        pstmt.setString(2, i == 5 ? null : "row " + i); // NOT NULL constraint failed
+        pstmt.addBatch();
+      }
+      try {
+        pstmt.executeBatch();
+        Assert.fail("constraint violation expected");
+      } catch (BatchUpdateException e) {
+        final int[] counts = e.getUpdateCounts();
+        Assert.assertEquals(rows, counts.length);
+        Assert.assertEquals(Statement.EXECUTE_FAILED, counts[5]);
+        Assert.assertEquals(1, counts[4]);
+        Assert.assertEquals(1, counts[6]);
+      }
+      Assert.assertTrue(c.getAutoCommit());
+      pstmt.close();
+      final ResultSet rs = stmt.executeQuery("SELECT count(*) FROM test");
+      Assert.assertTrue(rs.next());
+      Assert.assertEquals(rows - 1, rs.getInt(1));
+      rs.close();
+
+      ((Stmt) stmt).setBatchCommitSize(3);
+      for (int i = 0; i < rows; i++) {
+        stmt.addBatch("UPDATE test SET t = 'updated' WHERE id = " + i);
+      }
+      final int[] counts = stmt.executeBatch();
+      Assert.assertEquals(0, counts[5]);
+      Assert.assertEquals(1, counts[9]);
+      Assert.assertTrue(c.getAutoCommit());
+      stmt.close();
+    } finally {
+      if (null != c) c.close();
+    }
+  }
+
+  @Test
+  public void rewriteBatchedInserts() throws SQLException {
+    final Properties info = new Properties();
+    info.setProperty(ConnConfig.REWRITE_BATCHED_INSERTS, "true");
+    Connection c = null;
+    try {
+      c = DriverManager.getConnection(JDBC.MEMORY, info);
+      ((Conn) c).getConn().setLimit(Limits.SQLITE_LIMIT_VARIABLE_NUMBER, 10); // 5 rows per insert
+      final Statement stmt = c.createStatement();
+      stmt.executeUpdate("CREATE TABLE test (id INTEGER PRIMARY KEY, t TEXT NOT NULL)");
+      final PrepStmt pstmt = (PrepStmt) c.prepareStatement("INSERT INTO test (id, t) VALUES (?, ?)");
+      Assert.assertTrue(pstmt.isRewriteBatchedInserts());
+      final int rows = 12;
+      for (int i = 0; i < rows; i++) {
+        pstmt.setInt(1, i);
+        pstmt.setString(2, i == 7 ? null : "row " + i); // NOT NULL constraint failed
+        pstmt.addBatch();
+      }
+      try {
+        pstmt.executeBatch();
+        Assert.fail("constraint violation expected");
+      } catch (BatchUpdateException e) {
+        final int[] counts = e.getUpdateCounts();
+        Assert.assertEquals(rows, counts.length);
+        for (int i = 0; i < rows; i++) {
+          Assert.assertEquals(i == 7 ? Statement.EXECUTE_FAILED : 1, counts[i]);
+        }
+      }
+      pstmt.close();
+      final ResultSet rs = stmt.executeQuery("SELECT count(*), sum(id) FROM test");
+      Assert.assertTrue(rs.next());
+      Assert.assertEquals(rows - 1, rs.getInt(1));
+      Assert.assertEquals(rows * (rows - 1) / 2 - 7, rs.getInt(2));
+      rs.close();
+
+      final PreparedStatement ignore = c.prepareStatement("INSERT OR IGNORE INTO test VALUES (?, ?)");
+      for (int i = 6; i < 8; i++) {
+        ignore.setInt(1, i);
+        ignore.setString(2, "row " + i);
+        ignore.addBatch();
+      }
+      final int[] counts = ignore.executeBatch();
+      Assert.assertEquals(Statement.SUCCESS_NO_INFO, counts[0]); // one row ignored in a multi-row insert
+      Assert.assertEquals(Statement.SUCCESS_NO_INFO, counts[1]);
+      ignore.close();
+      stmt.close();
+    } finally {
+      if (null != c) c.close();
+    }
+  }
+
+  @Test
+  public void batchInsert() {
+    final BatchInsert insert = BatchInsert.parse("INSERT INTO test (a, \"b)\") VALUES (?, '?', (? + 1)) ; -- comment");
+    Assert.assertNotNull(insert);
+    Assert.assertEquals(2, insert.getParamCount());
+    Assert.assertEquals("INSERT INTO test (a, \"b)\") VALUES (?, '?', (? + 1)),(?, '?', (? + 1))", insert.sql(2));
+    Assert.assertNotNull(BatchInsert.parse("REPLACE INTO test VALUES(?)"));
+    Assert.assertFalse(insert.isRollback());
+    Assert.assertTrue(BatchInsert.parse("INSERT OR ROLLBACK INTO test VALUES (?)").isRollback());
+    Assert.assertFalse(BatchInsert.parse("INSERT INTO test VALUES (? OR rollback)").isRollback());
+    Assert.assertNull(BatchInsert.parse("INSERT OR FAIL INTO test VALUES (?)"));
+    Assert.assertNull(BatchInsert.parse("insert or /* comment */ fail into test values (?)"));
+    Assert.assertNull(BatchInsert.parse("INSERT INTO test VALUES (:a)"));
+    Assert.assertNull(BatchInsert.parse("INSERT INTO test VALUES (?1)"));
+    Assert.assertNull(BatchInsert.parse("INSERT INTO test VALUES (?), (?)"));
+    Assert.assertNull(BatchInsert.parse("INSERT INTO test VALUES (?) RETURNING id"));
+    Assert.assertNull(BatchInsert.parse("INSERT INTO test SELECT ?"));
+    Assert.assertNull(BatchInsert.parse("UPDATE test SET a = ?"));
+  }
+
+  @Test
+  public void queryTimeout() throws SQLException {
+    Connection c = null;
+    try {
+      c = DriverManager.getConnection(JDBC.MEMORY);
+      final PreparedStatement pstmt = c.prepareStatement(
+          "WITH RECURSIVE cnt(x) AS (SELECT 1 UNION ALL SELECT x+1 FROM cnt) SELECT count(*) FROM cnt");
+      pstmt.setQueryTimeout(1);
+      Assert.assertEquals(1, pstmt.getQueryTimeout());
+      final long start = System.currentTimeMillis();
+      try {
+        pstmt.executeQuery();
+        Assert.fail("timeout expected");
+      } catch (SQLTimeoutException e) {
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+      }
+      pstmt.close();
+
+      // columnar batch: the batch stops at the first timeout
+      final Statement stmt = c.createStatement();
+      stmt.executeUpdate("CREATE TABLE big (x INT)");
+      stmt.executeUpdate("WITH RECURSIVE cnt(x) AS (SELECT 1 UNION ALL SELECT x+1 FROM cnt LIMIT 1000) INSERT INTO big SELECT x FROM cnt");
+      stmt.executeUpdate("CREATE TABLE sink (n INT)");
+      stmt.executeUpdate("CREATE TRIGGER slow AFTER INSERT ON sink WHEN new.n > 0 BEGIN " +
+          "INSERT INTO sink SELECT -count(*) FROM big a, big b, big c; END");
+      stmt.close();
+      final PrepStmt many = (PrepStmt) c.prepareStatement("INSERT INTO sink VALUES (?)");
+      many.setQueryTimeout(1);
+      try {
+        many.executeMany(new BindBatch(1).longs(1, new long[]{1, 2, 3}, null), 3);
+        Assert.fail("timeout expected");
+      } catch (BatchUpdateException e) {
+        Assert.assertTrue(e.getCause() instanceof SQLTimeoutException);
+        Assert.assertEquals(1, e.getUpdateCounts().length);
+      }
+      many.close();
+    } finally {
+      if (null != c) c.close();
+    }
+  }
+}
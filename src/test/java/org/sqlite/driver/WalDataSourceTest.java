@@ -0,0 +1,183 @@
+package org.sqlite.driver;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+public class WalDataSourceTest {
+  @Test
+  public void writerAndReaders() throws SQLException, IOException {
+    final File file = File.createTempFile("sqlite-jna", ".db");
+    final WalDataSource ds = new WalDataSource(JDBC.PREFIX + file.getPath(), 2);
+    try {
+      final Connection writer = ds.getConnection();
+      Assert.assertFalse(writer.isReadOnly());
+      final Statement stmt = writer.createStatement();
+      stmt.execute("CREATE TABLE test (data TEXT)");
+      Assert.assertEquals(1, stmt.executeUpdate("INSERT INTO test (data) VALUES ('ok')"));
+      stmt.close();
+      writer.setAutoCommit(false);
+      final Statement pending = writer.createStatement();
+      Assert.assertEquals(1, pending.executeUpdate("INSERT INTO test (data) VALUES ('ko')"));
+      writer.close(); // pending transaction rolled back
+      Assert.assertTrue(pending.isClosed());
+      Assert.assertTrue(writer.isClosed());
+
+      final Connection reader1 = ds.getReadOnlyConnection();
+      final Connection reader2 = ds.getReadOnlyConnection();
+      Assert.assertTrue(reader1.isReadOnly());
+      final Statement rstmt = reader2.createStatement();
+      final ResultSet rs = rstmt.executeQuery("SELECT data FROM test");
+      Assert.assertTrue(rs.next());
+      Assert.assertEquals("ok", rs.getString(1));
+      rs.close();
+      try {
+        rstmt.executeUpdate("INSERT INTO test (data) VALUES ('ko')");
+        Assert.fail("reader must be read-only");
+      } catch (SQLException e) {
+        // expected
+      }
+      rstmt.close();
+      reader1.close();
+      reader2.close();
+
+      // read-only writer (query only until returned to the pool)
+      final Connection queryOnly = ds.getConnection();
+      queryOnly.setReadOnly(true);
+      Assert.assertTrue(queryOnly.isReadOnly());
+      final Statement qstmt = queryOnly.createStatement();
+      try {
+        qstmt.executeUpdate("INSERT INTO test (data) VALUES ('ko')");
+        Assert.fail("query only");
+      } catch (SQLException e) {
+        // expected
+      }
+      queryOnly.close();
+
+      ds.setLoginTimeout(1);
+      final Connection w = ds.getConnection();
+      Assert.assertTrue(w.getAutoCommit());
+      Assert.assertFalse(w.isReadOnly());
+      try {
+        ds.getConnection();
+        Assert.fail("only one writer expected");
+      } catch (SQLException e) {
+        // expected: timeout
+      }
+      w.close();
+    } finally {
+      ds.close();
+      file.delete();
+      new File(file.getPath() + "-wal").delete();
+      new File(file.getPath() + "-shm").delete();
+    }
+  }
+
+  @Test
+  public void logicalClose() throws SQLException, IOException {
+    final File file = File.createTempFile("sqlite-jna", ".db");
+    final WalDataSource ds = new WalDataSource(JDBC.PREFIX + file.getPath(), 1);
+    try {
+      final Connection writer = ds.getConnection();
+      final Statement stmt = writer.createStatement();
+      stmt.execute("CREATE TABLE test (data TEXT)");
+      stmt.executeUpdate("INSERT INTO test (data) VALUES ('1'), ('2')");
+
+      Connection reader = ds.getReadOnlyConnection();
+      final PreparedStatement pstmt = reader.prepareStatement("SELECT data FROM test");
+      final ResultSet rs = pstmt.executeQuery();
+      Assert.assertTrue(rs.next()); // read transaction in progress
+      reader.close();
+      Assert.assertTrue(pstmt.isClosed());
+
+      stmt.executeUpdate("INSERT INTO test (data) VALUES ('3')");
+      reader = ds.getReadOnlyConnection(); // same physical connection
+      final Statement rstmt = reader.createStatement();
+      final ResultSet count = rstmt.executeQuery("SELECT count(*) FROM test");
+      Assert.assertTrue(count.next());
+      Assert.assertEquals(3, count.getInt(1)); // not a stale snapshot
+      count.close();
+      reader.close();
+      stmt.close();
+      writer.close();
+    } finally {
+      ds.close();
+      file.delete();
+      new File(file.getPath() + "-wal").delete();
+      new File(file.getPath() + "-shm").delete();
+    }
+  }
+
+  @Test
+  public void mbeans() throws Exception {
+    final File file = File.createTempFile("sqlite-jna", ".db");
+    final WalDataSource ds = new WalDataSource(JDBC.PREFIX + file.getPath(), 1);
+    final Properties info = new Properties();
+    info.setProperty(ConnConfig.JMX, "true");
+    ds.setProperties(info);
+    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    final ObjectName pool = new ObjectName("org.sqlite:type=Pool,name=" + ObjectName.quote(ds.getUrl()));
+    final ObjectName db;
+    try {
+      final Connection writer = ds.getConnection();
+      db = new ObjectName("org.sqlite:type=Database,name=" + ObjectName.quote(((Conn) writer).getConn().getFilename()));
+      final Statement stmt = writer.createStatement();
+      stmt.execute("CREATE TABLE test (data TEXT)");
+      Assert.assertEquals(1, stmt.executeUpdate("INSERT INTO test (data) VALUES ('ok')"));
+      stmt.close();
+
+      Assert.assertEquals(2, server.getAttribute(db, "OpenConnections"));
+      Assert.assertTrue((Long) server.getAttribute(db, "WalSize") > 0);
+      Assert.assertTrue((Long) server.getAttribute(db, "CacheUsed") > 0);
+      Assert.assertEquals(0L, server.getAttribute(db, "BusyGiveUps"));
+      Assert.assertEquals(2, server.getAttribute(pool, "OpenConnections"));
+      Assert.assertEquals(false, server.getAttribute(pool, "WriterIdle"));
+      Assert.assertEquals(1, server.getAttribute(pool, "IdleReaders"));
+
+      final String result = (String) server.invoke(db, "checkpoint", null, null);
+      Assert.assertTrue(result, result.startsWith("busy: 0"));
+      Assert.assertTrue((Long) server.getAttribute(db, "LastCheckpoint") > 0);
+      final Statement index = writer.createStatement();
+      index.execute("CREATE INDEX test_data ON test (data)");
+      index.executeQuery("SELECT count(*) FROM test WHERE data = 'ok'").close(); // query history
+      Assert.assertTrue((Integer) server.invoke(db, "optimize", null, null) > 0);
+      final ResultSet stat = index.executeQuery("SELECT count(*) FROM sqlite_master WHERE name = 'sqlite_stat1'");
+      Assert.assertTrue(stat.next());
+      Assert.assertEquals(1, stat.getInt(1));
+      stat.close();
+      index.close();
+      Assert.assertTrue((Long) server.invoke(db, "releaseMemory", null, null) >= 0);
+      Assert.assertEquals(2, server.invoke(db, "interruptAll", null, null));
+      writer.close();
+      Assert.assertEquals(true, server.getAttribute(pool, "WriterIdle"));
+    } finally {
+      ds.close();
+      file.delete();
+      new File(file.getPath() + "-wal").delete();
+      new File(file.getPath() + "-shm").delete();
+    }
+    Assert.assertFalse(server.isRegistered(db));
+    Assert.assertFalse(server.isRegistered(pool));
+
+    // unregistered whoever closes the connection
+    final Connection c = DriverManager.getConnection(JDBC.MEMORY, info);
+    final ObjectName memory = new ObjectName("org.sqlite:type=Database,name=" + ObjectName.quote(org.sqlite.Conn.MEMORY));
+    Assert.assertEquals(1, server.getAttribute(memory, "OpenConnections"));
+    ((Conn) c).getConn().close();
+    Assert.assertFalse(server.isRegistered(memory));
+    c.close();
+  }
+}